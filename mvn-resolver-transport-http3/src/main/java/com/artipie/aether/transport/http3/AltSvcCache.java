@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of HTTP/3 alternative services (RFC 7838 {@code Alt-Svc}) advertised by origins, optionally persisted
+ * to a file under the local repository so that following builds go straight to QUIC.
+ * Only {@code h3} alternatives of {@code https} origins on the same port as the origin are kept: Jetty HTTP/3
+ * client connects to the authority of the request URI, and QUIC always uses TLS, which the {@code http} origin
+ * (RFC 9114, section 3.1) does not authenticate.
+ */
+final class AltSvcCache {
+
+    /**
+     * Whether discovered alternative services are persisted across builds.
+     */
+    static final String CONFIG_PROP_PERSIST = "aether.connector.http3.altSvc.persist";
+
+    static final String FILE_NAME = "alt-svc.properties";
+
+    /**
+     * Default {@code ma} (max age) of the alternative service, in seconds.
+     */
+    private static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toSeconds(1);
+
+    private static final String H3 = "h3";
+
+    private static final String CLEAR = "clear";
+
+    private static final String HTTPS = "https://";
+
+    private final OriginExpirations entries;
+
+    /**
+     * Ctor.
+     * @param file File to persist entries to, {@code null} to keep them in memory only
+     */
+    AltSvcCache(Path file) {
+        this.entries = new OriginExpirations(file, "HTTP/3 alternative services: origin=expiration millis");
+    }
+
+    /**
+     * Whether origin advertised non-expired HTTP/3 support.
+     * @param origin Origin, see {@link OriginExpirations#origin(java.net.URI)}
+     * @return True if HTTP/3 should be used
+     */
+    boolean supportsHttp3(String origin) {
+        return origin.startsWith(HTTPS) && this.entries.contains(origin);
+    }
+
+    /**
+     * Updates origin entry with {@code Alt-Svc} header value of its response.
+     * @param origin Origin, see {@link OriginExpirations#origin(java.net.URI)}
+     * @param header Header value, may be {@code null}
+     */
+    void update(String origin, String header) {
+        if (header == null || header.isBlank() || !origin.startsWith(HTTPS)) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final String port = origin.substring(origin.lastIndexOf(':') + 1);
+        Long expires = null;
+        boolean clear = false;
+        for (final String alternative : header.split(",")) {
+            final String[] params = alternative.trim().split(";");
+            if (CLEAR.equals(params[0].trim())) {
+                clear = true;
+                break;
+            }
+            final int eq = params[0].indexOf('=');
+            if (eq < 0 || !H3.equals(params[0].substring(0, eq).trim())) {
+                continue;
+            }
+            final String authority = params[0].substring(eq + 1).trim().replace("\"", "");
+            final int colon = authority.lastIndexOf(':');
+            if (colon != 0 || !port.equals(authority.substring(colon + 1))) {
+                HttpTransporter.LOGGER.debug("Ignoring alternative {} of {}", authority, origin);
+                continue;
+            }
+            long maxAge = DEFAULT_MAX_AGE;
+            for (int idx = 1; idx < params.length; ++idx) {
+                final String param = params[idx].trim();
+                if (param.startsWith("ma=")) {
+                    try {
+                        maxAge = Long.parseLong(param.substring(3));
+                    } catch (final NumberFormatException ignored) {
+                        // keep default max age
+                    }
+                }
+            }
+            expires = now + TimeUnit.SECONDS.toMillis(maxAge);
+        }
+        final boolean changed;
+        if (clear) {
+            changed = this.entries.remove(origin);
+        } else if (expires != null) {
+            final Long prev = this.entries.put(origin, expires);
+            // avoid rewriting the file on each response: only when the entry is new or notably refreshed
+            changed = prev == null || expires - prev > (expires - now) / 2;
+        } else {
+            changed = false;
+        }
+        if (changed) {
+            HttpTransporter.LOGGER.debug("Alt-Svc of {} updated: {}", origin, header);
+            this.entries.save();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.ArtifactUpload;
+import org.eclipse.aether.spi.connector.MetadataDownload;
+import org.eclipse.aether.spi.connector.MetadataUpload;
+import org.eclipse.aether.spi.connector.RepositoryConnector;
+import org.eclipse.aether.spi.connector.checksum.ChecksumAlgorithmFactory;
+import org.eclipse.aether.spi.connector.checksum.ChecksumAlgorithmHelper;
+import org.eclipse.aether.spi.connector.layout.RepositoryLayout;
+import org.eclipse.aether.spi.connector.transport.PutTask;
+import org.eclipse.aether.spi.connector.transport.TransportListener;
+import org.eclipse.aether.transfer.ArtifactTransferException;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferListener;
+import org.eclipse.aether.transfer.TransferResource;
+
+/**
+ * Connector prefetching batches of downloads before passing them to the delegate, and deploying batches of
+ * artifacts with their checksum files by pipelined requests, see {@link BatchRepositoryConnectorFactory}.
+ */
+final class BatchRepositoryConnector implements RepositoryConnector {
+
+    private final RepositoryConnector delegate;
+
+    private final HttpTransporter transporter;
+
+    private final RepositoryLayout layout;
+
+    private final RepositorySystemSession session;
+
+    private final RemoteRepository repository;
+
+    /**
+     * Ctor.
+     * @param delegate Connector performing the downloads and uploads
+     * @param transporter Transporter prefetching the downloads and deploying artifacts, closed with this connector
+     * @param layout Layout of the repository
+     * @param session Repository system session
+     * @param repository Remote repository
+     */
+    BatchRepositoryConnector(
+        RepositoryConnector delegate, HttpTransporter transporter, RepositoryLayout layout,
+        RepositorySystemSession session, RemoteRepository repository
+    ) {
+        this.delegate = delegate;
+        this.transporter = transporter;
+        this.layout = layout;
+        this.session = session;
+        this.repository = repository;
+    }
+
+    @Override
+    public void get(
+        Collection<? extends ArtifactDownload> artifactDownloads,
+        Collection<? extends MetadataDownload> metadataDownloads
+    ) {
+        final List<URI> locations = new ArrayList<>();
+        if (artifactDownloads != null) {
+            for (final ArtifactDownload download : artifactDownloads) {
+                if (!download.isExistenceCheck()) {
+                    locations.add(this.layout.getLocation(download.getArtifact(), false));
+                }
+            }
+        }
+        if (metadataDownloads != null) {
+            for (final MetadataDownload download : metadataDownloads) {
+                locations.add(this.layout.getLocation(download.getMetadata(), false));
+            }
+        }
+        Runnable unpark = () -> { };
+        if (locations.size() > 1) {
+            // downloads run in the background, requests of the delegate await the ones still in flight
+            unpark = this.transporter.prefetch(locations);
+        }
+        try {
+            this.delegate.get(artifactDownloads, metadataDownloads);
+        } finally {
+            unpark.run();
+        }
+    }
+
+    @Override
+    public void put(
+        Collection<? extends ArtifactUpload> artifactUploads,
+        Collection<? extends MetadataUpload> metadataUploads
+    ) {
+        if (artifactUploads == null || artifactUploads.size() < 2
+            || artifactUploads.stream().anyMatch(upload -> upload.getFileTransformer() != null)) {
+            this.delegate.put(artifactUploads, metadataUploads);
+            return;
+        }
+        try {
+            this.deploy(artifactUploads);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            for (final ArtifactUpload upload : artifactUploads) {
+                if (upload.getException() == null) {
+                    upload.setException(new ArtifactTransferException(upload.getArtifact(), this.repository, ex));
+                }
+            }
+            return;
+        }
+        // metadata refers to the deployed artifacts, it is uploaded once they all are
+        if (metadataUploads != null && !metadataUploads.isEmpty()) {
+            this.delegate.put(null, metadataUploads);
+        }
+    }
+
+    /**
+     * Deploys the artifacts and their checksum files by
+     * {@link HttpTransporter#putAll(List, java.util.function.BiConsumer)}, as the basic connector does one by one:
+     * checksums are calculated from the files, failures to upload them are only logged, and the listener of each
+     * upload is notified as its file is done, in order.
+     * @param uploads Uploads of artifacts
+     * @throws InterruptedException If interrupted
+     */
+    private void deploy(Collection<? extends ArtifactUpload> uploads) throws InterruptedException {
+        final List<PutTask> tasks = new ArrayList<>();
+        final Map<PutTask, Events> artifacts = new IdentityHashMap<>();
+        for (final ArtifactUpload upload : uploads) {
+            final URI location = this.layout.getLocation(upload.getArtifact(), true);
+            final Events events = new Events(
+                upload, new TransferResource(
+                    this.repository.getId(), this.repository.getUrl(), location.toString(), upload.getFile(),
+                    upload.getTrace()
+                )
+            );
+            try {
+                events.initiated();
+            } catch (final TransferCancelledException ex) {
+                events.failed(ex);
+                continue;
+            }
+            final PutTask task = new PutTask(location).setDataFile(upload.getFile()).setListener(events);
+            tasks.add(task);
+            artifacts.put(task, events);
+            tasks.addAll(this.checksums(upload, location));
+        }
+        this.transporter.putAll(
+            tasks,
+            (task, failure) -> {
+                final Events events = artifacts.get(task);
+                if (events == null) {
+                    if (failure != null) {
+                        HttpTransporter.LOGGER.warn(
+                            "Failed to upload checksum to {}: {}", task.getLocation(), failure.getMessage()
+                        );
+                    }
+                } else if (failure == null) {
+                    events.succeeded();
+                } else {
+                    events.failed(failure);
+                }
+            }
+        );
+    }
+
+    /**
+     * Uploads of the checksum files of the artifact.
+     */
+    private List<PutTask> checksums(ArtifactUpload upload, URI location) {
+        final List<RepositoryLayout.ChecksumLocation> locations =
+            this.layout.getChecksumLocations(upload.getArtifact(), true, location);
+        final List<PutTask> res = new ArrayList<>(locations.size());
+        if (locations.isEmpty()) {
+            return res;
+        }
+        final List<ChecksumAlgorithmFactory> factories = new ArrayList<>(locations.size());
+        for (final RepositoryLayout.ChecksumLocation checksum : locations) {
+            factories.add(checksum.getChecksumAlgorithmFactory());
+        }
+        final Map<String, String> sums;
+        try {
+            sums = ChecksumAlgorithmHelper.calculate(upload.getFile(), factories);
+        } catch (final IOException ex) {
+            HttpTransporter.LOGGER.warn("Failed to calculate checksums of {}: {}", upload.getFile(), ex.getMessage());
+            return res;
+        }
+        for (final RepositoryLayout.ChecksumLocation checksum : locations) {
+            res.add(
+                new PutTask(checksum.getLocation())
+                    .setDataString(sums.get(checksum.getChecksumAlgorithmFactory().getName()))
+            );
+        }
+        return res;
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.delegate.close();
+        } finally {
+            this.transporter.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("batch(%s)", this.delegate);
+    }
+
+    /**
+     * Transfer events of an artifact upload, fed by the transport listener of its task.
+     */
+    private final class Events extends TransportListener {
+
+        private final ArtifactUpload upload;
+
+        private final TransferResource resource;
+
+        private final TransferEvent.Builder builder;
+
+        private final TransferListener listener;
+
+        Events(ArtifactUpload upload, TransferResource resource) {
+            this.upload = upload;
+            this.resource = resource;
+            this.builder = new TransferEvent.Builder(BatchRepositoryConnector.this.session, resource)
+                .setRequestType(TransferEvent.RequestType.PUT);
+            this.listener = upload.getListener();
+        }
+
+        @Override
+        public void transportStarted(long offset, long length) throws TransferCancelledException {
+            this.resource.setContentLength(length);
+            this.builder.resetType(TransferEvent.EventType.STARTED).setTransferredBytes(offset);
+            if (this.listener != null) {
+                this.listener.transferStarted(this.builder.build());
+            }
+        }
+
+        @Override
+        public void transportProgressed(ByteBuffer data) throws TransferCancelledException {
+            this.builder.resetType(TransferEvent.EventType.PROGRESSED).addTransferredBytes(data.remaining())
+                .setDataBuffer(data);
+            if (this.listener != null) {
+                this.listener.transferProgressed(this.builder.build());
+            }
+        }
+
+        void initiated() throws TransferCancelledException {
+            if (this.listener != null) {
+                this.listener.transferInitiated(this.event(TransferEvent.EventType.INITIATED));
+            }
+        }
+
+        void succeeded() {
+            if (this.listener != null) {
+                this.listener.transferSucceeded(this.event(TransferEvent.EventType.SUCCEEDED));
+            }
+        }
+
+        void failed(Exception failure) {
+            final ArtifactTransferException ex = new ArtifactTransferException(
+                this.upload.getArtifact(), BatchRepositoryConnector.this.repository, failure
+            );
+            this.upload.setException(ex);
+            if (this.listener != null) {
+                this.listener.transferFailed(
+                    this.builder.copy().resetType(TransferEvent.EventType.FAILED).setException(ex).build()
+                );
+            }
+        }
+
+        private TransferEvent event(TransferEvent.EventType type) {
+            return this.builder.copy().resetType(type).build();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import com.artipie.aether.transport.http3.checksum.ChecksumExtractor;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.RepositoryConnector;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.spi.connector.layout.RepositoryLayout;
+import org.eclipse.aether.spi.connector.layout.RepositoryLayoutProvider;
+import org.eclipse.aether.spi.connector.transport.Transporter;
+import org.eclipse.aether.transfer.NoRepositoryConnectorException;
+import org.eclipse.aether.transfer.NoRepositoryLayoutException;
+import org.eclipse.aether.transfer.NoTransporterException;
+import org.eclipse.aether.util.ConfigUtils;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A repository connector factory wrapping the basic connector: batches of downloads are first fetched by
+ * {@link HttpTransporter#getAll(java.util.Collection)} with pipelined requests, then the basic connector
+ * performs them as usual, its transporters reading the prefetched files instead of going to the network.
+ * The basic connector keeps doing checksum policies, temporary files and events.
+ * <p>
+ * Batches of artifact uploads are deployed with their checksum files by
+ * {@link HttpTransporter#putAll(java.util.List, java.util.function.BiConsumer)}, up to
+ * {@value HttpTransporter#CONFIG_PROP_DEPLOY_WINDOW} requests in flight, metadata is then uploaded by the basic
+ * connector.
+ * <p>
+ * Disabled unless {@value #CONFIG_PROP_BATCH} is set, the basic connector is used directly then.
+ */
+@Named("http3-batch")
+public final class BatchRepositoryConnectorFactory implements RepositoryConnectorFactory {
+
+    /**
+     * Whether batches of downloads are prefetched with pipelined requests.
+     */
+    static final String CONFIG_PROP_BATCH = "aether.connector.http3.batch";
+
+    private final RepositoryConnectorFactory basic;
+
+    private final RepositoryLayoutProvider layouts;
+
+    private final HttpTransporterFactory transporters;
+
+    private float priority = 10.0f;
+
+    /**
+     * Ctor.
+     * @param basic Basic connector factory
+     * @param layouts Repository layouts
+     * @param extractors Checksum extractors of the transporters
+     */
+    @Inject
+    public BatchRepositoryConnectorFactory(
+            @Named("basic") RepositoryConnectorFactory basic,
+            RepositoryLayoutProvider layouts,
+            Map<String, ChecksumExtractor> extractors
+    ) {
+        this.basic = requireNonNull(basic, "basic connector factory cannot be null");
+        this.layouts = requireNonNull(layouts, "repository layout provider cannot be null");
+        this.transporters = new HttpTransporterFactory(extractors);
+    }
+
+    @Override
+    public float getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority of this component.
+     *
+     * @param priority The priority.
+     * @return This component for chaining, never {@code null}.
+     */
+    public BatchRepositoryConnectorFactory setPriority(float priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    @Override
+    public RepositoryConnector newInstance(RepositorySystemSession session, RemoteRepository repository)
+            throws NoRepositoryConnectorException {
+        requireNonNull(session, "session cannot be null");
+        requireNonNull(repository, "repository cannot be null");
+        if (!ConfigUtils.getBoolean(session, false, CONFIG_PROP_BATCH + "." + repository.getId(), CONFIG_PROP_BATCH)) {
+            throw new NoRepositoryConnectorException(repository, "Batch downloads are disabled");
+        }
+        final RepositoryLayout layout;
+        final Transporter transporter;
+        try {
+            layout = this.layouts.newRepositoryLayout(session, repository);
+            transporter = this.transporters.newInstance(session, repository);
+        } catch (NoRepositoryLayoutException | NoTransporterException e) {
+            throw new NoRepositoryConnectorException(repository, e);
+        }
+        try {
+            return new BatchRepositoryConnector(
+                this.basic.newInstance(session, repository), (HttpTransporter) transporter, layout, session,
+                repository
+            );
+        } catch (NoRepositoryConnectorException e) {
+            transporter.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressable store of downloaded files shared by all repositories, under the local repository.
+ * Files are stored by their SHA-1 (or SHA-256) computed during the download, and looked up by the checksums the
+ * server declares in the response headers, so that the same bytes are not downloaded again from another
+ * repository. Least recently used files are evicted once the store exceeds its max size.
+ * <p>
+ * Inserts are atomic moves of complete temporary files, so concurrent builds sharing the local repository
+ * never see a partial file.
+ */
+final class BlobStore {
+
+    /**
+     * Whether downloaded files are kept in the store and served from it.
+     */
+    static final String CONFIG_PROP_BLOBS = "aether.connector.http3.blobs";
+
+    /**
+     * Max size of the store in bytes.
+     */
+    static final String CONFIG_PROP_MAX_SIZE = "aether.connector.http3.blobs.maxSize";
+
+    static final long DEFAULT_MAX_SIZE = 1024L * 1024L * 1024L;
+
+    static final String DIR_NAME = "blobs";
+
+    /**
+     * Supported algorithms by preference.
+     */
+    private static final String[] ALGORITHMS = {"SHA-1", "SHA-256"};
+
+    /**
+     * Lengths of hex values of the supported algorithms.
+     */
+    private static final int[] LENGTHS = {40, 64};
+
+    private static final Pattern HEX = Pattern.compile("[0-9a-f]+");
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path dir;
+
+    private final long maxSize;
+
+    /**
+     * Total size of stored files, {@code -1} until the directory is scanned.
+     */
+    private long size = -1L;
+
+    /**
+     * Ctor.
+     * @param dir Directory of the store
+     * @param maxSize Max size in bytes
+     */
+    BlobStore(Path dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Opens the stored file with one of the checksums and marks it as recently used.
+     * @param checksums Checksums by algorithm, may be {@code null}
+     * @return Open channel, {@code null} if no file is stored
+     */
+    SeekableByteChannel open(Map<String, String> checksums) {
+        SeekableByteChannel res = null;
+        for (int idx = 0; checksums != null && idx < ALGORITHMS.length && res == null; ++idx) {
+            final Path blob = this.blob(ALGORITHMS[idx], checksums.get(ALGORITHMS[idx]));
+            if (blob != null) {
+                try {
+                    res = Files.newByteChannel(blob);
+                    Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+                } catch (final NoSuchFileException ex) {
+                    // not stored or evicted meanwhile
+                } catch (final IOException ex) {
+                    HttpTransporter.LOGGER.debug("Failed to open blob {}: {}", blob, ex.getMessage());
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Stores a copy of the downloaded file, unless it is stored already.
+     * @param file Downloaded file
+     * @param checksums Checksums computed during the download
+     */
+    void insert(Path file, Map<String, String> checksums) {
+        Path blob = null;
+        for (int idx = 0; idx < ALGORITHMS.length && blob == null; ++idx) {
+            blob = this.blob(ALGORITHMS[idx], checksums.get(ALGORITHMS[idx]));
+        }
+        if (blob == null || Files.exists(blob)) {
+            return;
+        }
+        try {
+            Files.createDirectories(blob.getParent());
+            final Path tmp = Files.createTempFile(blob.getParent(), blob.getFileName().toString(), TMP_SUFFIX);
+            try {
+                Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            this.added(Files.size(blob));
+        } catch (final IOException ex) {
+            HttpTransporter.LOGGER.debug("Failed to store blob {}: {}", blob, ex.getMessage());
+        }
+    }
+
+    /**
+     * Path of the file with the checksum.
+     * @return Path, {@code null} if algorithm is not supported or the checksum is malformed
+     */
+    private Path blob(String algorithm, String checksum) {
+        final int idx = Arrays.asList(ALGORITHMS).indexOf(algorithm);
+        Path res = null;
+        if (idx >= 0 && checksum != null) {
+            final String hex = checksum.trim().toLowerCase(Locale.ROOT);
+            if (hex.length() == LENGTHS[idx] && HEX.matcher(hex).matches()) {
+                res = this.dir.resolve(algorithm.replace("-", "").toLowerCase(Locale.ROOT))
+                    .resolve(hex.substring(0, 2)).resolve(hex);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Accounts a new file, evicting least recently used ones down to 90% of the max size when it is exceeded.
+     */
+    private synchronized void added(long length) throws IOException {
+        if (this.size < 0L) {
+            this.size = 0L;
+            for (final Path blob : this.blobs()) {
+                this.size += Files.size(blob);
+            }
+        } else {
+            this.size += length;
+        }
+        if (this.size > this.maxSize) {
+            final List<Path> blobs = this.blobs();
+            blobs.sort(Comparator.comparing(BlobStore::lastModified));
+            for (int idx = 0; idx < blobs.size() && this.size > this.maxSize - this.maxSize / 10L; ++idx) {
+                final Path blob = blobs.get(idx);
+                try {
+                    final long len = Files.size(blob);
+                    Files.delete(blob);
+                    this.size -= len;
+                } catch (final NoSuchFileException ex) {
+                    // evicted by another build sharing the local repository
+                }
+            }
+        }
+    }
+
+    private List<Path> blobs() throws IOException {
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            return files.filter(Files::isRegularFile)
+                .filter(file -> !file.getFileName().toString().endsWith(TMP_SUFFIX))
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (final IOException ex) {
+            return FileTime.fromMillis(0L);
+        }
+    }
+}
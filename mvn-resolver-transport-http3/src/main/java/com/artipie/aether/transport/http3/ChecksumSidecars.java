@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.eclipse.jetty.client.BufferingResponseListener;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.Result;
+import org.eclipse.jetty.http.HttpStatus;
+
+/**
+ * Checksum files ({@code .sha1}, {@code .md5}) of downloaded resources requested speculatively, in parallel with
+ * the download of the resource, when its response declares no checksums in headers: the resolver requests them
+ * right after the resource, and reads them from here then, saving a round trip per resource.
+ * <p>
+ * Bodies are kept by the transporter until requested or until it is closed; the resolver uses one transporter
+ * for a resource and its checksums.
+ */
+final class ChecksumSidecars {
+
+    /**
+     * Comma separated extensions of checksum files requested speculatively, such as {@code sha1,md5};
+     * empty value disables speculative requests.
+     */
+    static final String CONFIG_PROP_SIDECARS = "aether.connector.http3.sidecars";
+
+    /**
+     * Max length of a checksum file body.
+     */
+    private static final int MAX_LENGTH = 8 * 1024;
+
+    private final List<String> extensions;
+
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> bodies = new ConcurrentHashMap<>();
+
+    /**
+     * Ctor.
+     * @param config Value of {@link #CONFIG_PROP_SIDECARS}
+     */
+    ChecksumSidecars(String config) {
+        final List<String> list = new ArrayList<>();
+        for (final String item : config.split(",")) {
+            final String ext = item.trim().toLowerCase(Locale.ROOT);
+            if (!ext.isEmpty()) {
+                list.add(ext.startsWith(".") ? ext : '.' + ext);
+            }
+        }
+        this.extensions = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Whether checksum files are requested speculatively.
+     * @return True if any extension is configured
+     */
+    boolean enabled() {
+        return !this.extensions.isEmpty();
+    }
+
+    /**
+     * Requests the checksum files of the resource, unless it is a checksum file itself.
+     * @param location Location of the resource
+     * @param url URL of the resource
+     * @param requests Creates requests (not sent yet) by URL
+     */
+    void speculate(URI location, String url, Function<String, Request> requests) {
+        final String path = location.getPath();
+        if (path == null || this.extensions.stream().anyMatch(path::endsWith)) {
+            return;
+        }
+        for (final String ext : this.extensions) {
+            this.bodies.computeIfAbsent(
+                url + ext,
+                sidecar -> {
+                    final CompletableFuture<byte[]> body = new CompletableFuture<>();
+                    requests.apply(sidecar).send(
+                        new BufferingResponseListener(MAX_LENGTH) {
+                            @Override
+                            public void onComplete(Result result) {
+                                if (!result.isFailed() && result.getResponse().getStatus() == HttpStatus.OK_200) {
+                                    body.complete(this.getContent());
+                                } else {
+                                    body.complete(null);
+                                }
+                            }
+                        }
+                    );
+                    return body;
+                }
+            );
+        }
+    }
+
+    /**
+     * Takes the body of the speculatively requested checksum file.
+     * @param url URL of the checksum file
+     * @param timeout Max time to wait for the body in milliseconds
+     * @return Body, {@code null} if it was not requested or the request failed
+     */
+    byte[] take(String url, long timeout) {
+        final CompletableFuture<byte[]> body = this.bodies.remove(url);
+        byte[] res = null;
+        if (body != null) {
+            try {
+                res = body.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (final ExecutionException | TimeoutException ex) {
+                HttpTransporter.LOGGER.debug("Speculative request of {} failed: {}", url, ex.getMessage());
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Drops the bodies not taken.
+     */
+    void clear() {
+        this.bodies.clear();
+    }
+}
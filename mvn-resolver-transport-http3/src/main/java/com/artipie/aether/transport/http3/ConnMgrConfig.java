@@ -52,12 +52,18 @@ final class ConnMgrConfig {
 
     final int maxConnectionsPerRoute;
 
+    final int maxConcurrentStreams;
+
+    final int connectTimeout;
+
     ConnMgrConfig(
             RepositorySystemSession session,
             AuthenticationContext authContext,
             String httpsSecurityMode,
             int connectionMaxTtlSeconds,
-            int maxConnectionsPerRoute) {
+            int maxConnectionsPerRoute,
+            int maxConcurrentStreams,
+            int connectTimeout) {
         context = (authContext != null) ? authContext.get(AuthenticationContext.SSL_CONTEXT, SSLContext.class) : null;
         verifier = (authContext != null)
                 ? authContext.get(AuthenticationContext.SSL_HOSTNAME_VERIFIER, HostnameVerifier.class)
@@ -68,6 +74,30 @@ final class ConnMgrConfig {
         this.httpsSecurityMode = httpsSecurityMode;
         this.connectionMaxTtlSeconds = connectionMaxTtlSeconds;
         this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Settings which QUIC can not honour: its TLS stack is native, it only takes trust and key stores (exported
+     * as PEM files) from {@link org.eclipse.jetty.util.ssl.SslContextFactory}, and always uses TLS 1.3.
+     * HTTP/3 is not used with such settings.
+     * @return Description of the first such setting, {@code null} if there is none
+     */
+    String quicIncompatibility() {
+        String res = null;
+        if (context != null) {
+            res = "custom SSL context";
+        } else if (verifier != null) {
+            res = "custom hostname verifier";
+        } else if (cipherSuites != null) {
+            res = "custom cipher suites";
+        } else if (protocols != null && !Arrays.asList(protocols).contains("TLSv1.3")) {
+            res = "TLS protocols without TLSv1.3";
+        } else if (System.getProperty("javax.net.ssl.keyStore") != null) {
+            res = "client certificate key store";
+        }
+        return res;
     }
 
     private static String get(RepositorySystemSession session, String key) {
@@ -100,7 +130,9 @@ final class ConnMgrConfig {
                 && Arrays.equals(protocols, that.protocols)
                 && Objects.equals(httpsSecurityMode, that.httpsSecurityMode)
                 && connectionMaxTtlSeconds == that.connectionMaxTtlSeconds
-                && maxConnectionsPerRoute == that.maxConnectionsPerRoute;
+                && maxConnectionsPerRoute == that.maxConnectionsPerRoute
+                && maxConcurrentStreams == that.maxConcurrentStreams
+                && connectTimeout == that.connectTimeout;
     }
 
     @Override
@@ -113,6 +145,8 @@ final class ConnMgrConfig {
         hash = hash * 31 + hash(httpsSecurityMode);
         hash = hash * 31 + hash(connectionMaxTtlSeconds);
         hash = hash * 31 + hash(maxConnectionsPerRoute);
+        hash = hash * 31 + hash(maxConcurrentStreams);
+        hash = hash * 31 + hash(connectTimeout);
         return hash;
     }
 
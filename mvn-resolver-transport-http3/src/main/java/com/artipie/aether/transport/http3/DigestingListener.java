@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.aether.spi.connector.transport.TransportListener;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.aether.util.ChecksumUtils;
+
+/**
+ * Transport listener computing digests of the transferred bytes as they stream through the transporter, before
+ * passing them on to the listener of the task. Digests are updated in place from the reported buffers, so
+ * nothing is allocated per chunk.
+ * <p>
+ * Digests are only complete for transfers started from offset zero: resumed downloads yield no checksums.
+ */
+final class DigestingListener extends TransportListener {
+
+    /**
+     * Comma separated digest algorithms computed during downloads, such as {@code SHA-1,SHA-256,SHA-512};
+     * empty value disables computation. The resolver digests downloads itself, so this is opt-in.
+     */
+    static final String CONFIG_PROP_ALGORITHMS = "aether.connector.http3.checksums.algorithms";
+
+    static final String DEFAULT_ALGORITHMS = "";
+
+    private final TransportListener delegate;
+
+    private final String[] algorithms;
+
+    private final MessageDigest[] digests;
+
+    private boolean complete;
+
+    /**
+     * Ctor.
+     * @param delegate Listener of the task
+     * @param algorithms Digest algorithms, see {@link #algorithms(String)}
+     */
+    DigestingListener(TransportListener delegate, List<String> algorithms) {
+        this.delegate = delegate;
+        this.algorithms = algorithms.toArray(new String[0]);
+        this.digests = new MessageDigest[this.algorithms.length];
+        for (int idx = 0; idx < this.algorithms.length; ++idx) {
+            this.digests[idx] = digest(this.algorithms[idx]);
+        }
+    }
+
+    /**
+     * Parses and validates configured algorithms.
+     * @param config Value of {@link #CONFIG_PROP_ALGORITHMS}
+     * @return Algorithms, empty if disabled
+     * @throws IllegalArgumentException If algorithm is not supported
+     */
+    static List<String> algorithms(String config) {
+        final List<String> res = new ArrayList<>();
+        for (final String item : config.split(",")) {
+            final String algorithm = item.trim();
+            if (!algorithm.isEmpty()) {
+                digest(algorithm);
+                res.add(algorithm);
+            }
+        }
+        return Collections.unmodifiableList(res);
+    }
+
+    @Override
+    public void transportStarted(long dataOffset, long dataLength) throws TransferCancelledException {
+        for (final MessageDigest digest : this.digests) {
+            digest.reset();
+        }
+        this.complete = dataOffset == 0L;
+        this.delegate.transportStarted(dataOffset, dataLength);
+    }
+
+    @Override
+    public void transportProgressed(ByteBuffer data) throws TransferCancelledException {
+        if (this.complete) {
+            final int position = data.position();
+            for (final MessageDigest digest : this.digests) {
+                data.position(position);
+                digest.update(data);
+            }
+            data.position(position);
+        }
+        this.delegate.transportProgressed(data);
+    }
+
+    /**
+     * Checksums of the transferred content, resets the digests.
+     * @return Hex encoded checksums by algorithm, empty if the transfer did not start from offset zero
+     */
+    Map<String, String> checksums() {
+        final Map<String, String> res = new HashMap<>();
+        if (this.complete) {
+            for (int idx = 0; idx < this.digests.length; ++idx) {
+                res.put(this.algorithms[idx], ChecksumUtils.toHexString(this.digests[idx].digest()));
+            }
+            this.complete = false;
+        }
+        return res;
+    }
+
+    /**
+     * Compares checksums declared by the server with the computed ones, for the algorithms computed. A mismatch
+     * does not fail the transfer: the declared checksums are passed to the resolver, which applies its checksum
+     * policy to them.
+     * @param computed Computed checksums, see {@link #checksums()}
+     * @param declared Checksums declared in response headers, may be {@code null}
+     * @return Description of the first mismatch, {@code null} if checksums match
+     */
+    static String mismatch(Map<String, String> computed, Map<String, String> declared) {
+        if (declared == null) {
+            return null;
+        }
+        for (final Map.Entry<String, String> entry : declared.entrySet()) {
+            final String actual = computed.get(entry.getKey());
+            if (actual != null && !actual.equalsIgnoreCase(entry.getValue().trim())) {
+                return String.format(
+                    "%s checksum mismatch: declared %s, actual %s", entry.getKey(), entry.getValue(), actual
+                );
+            }
+        }
+        return null;
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalArgumentException(
+                String.format("Unsupported '%s' value of %s", algorithm, CONFIG_PROP_ALGORITHMS), ex
+            );
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.Closeable;
+import java.lang.ref.Cleaner;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.exception.UncheckedException;
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.RepositoryCache;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.util.ConfigUtils;
+import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
+import org.eclipse.jetty.client.transport.HttpClientConnectionFactory;
+import org.eclipse.jetty.client.transport.HttpClientTransportDynamic;
+import org.eclipse.jetty.client.transport.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.ClientConnectionFactoryOverHTTP2;
+import org.eclipse.jetty.http3.client.HTTP3Client;
+import org.eclipse.jetty.http3.client.transport.HttpClientTransportOverHTTP3;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Container for HTTP-related state that can be shared across incarnations of the transporter to optimize the
+ * communication with servers. Started Jetty clients (and thus their thread pools, selectors and open QUIC
+ * connections) are shared by all transporters of the session and are stopped once the session ends: the state
+ * lives in the {@link RepositoryCache} of the session and is closed when the cache is dropped with the session,
+ * as Resolver 1.9 has no session-ended callback.
+ */
+final class GlobalState implements Closeable {
+
+    static class CompoundKey {
+
+        private final Object[] keys;
+
+        CompoundKey(Object... keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || !getClass().equals(obj.getClass())) {
+                return false;
+            }
+            CompoundKey that = (CompoundKey) obj;
+            return Arrays.equals(keys, that.keys);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 17;
+            hash = hash * 31 + Arrays.hashCode(keys);
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(keys);
+        }
+    }
+
+    private static final String KEY = GlobalState.class.getName();
+
+    private static final String CONFIG_PROP_CACHE_STATE = "aether.connector.http.cacheState";
+
+    /**
+     * Max concurrent requests (QUIC streams) multiplexed over one HTTP/3 connection.
+     */
+    static final String CONFIG_PROP_MAX_CONCURRENT_STREAMS = "aether.connector.http.maxConcurrentStreams";
+
+    static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+
+    private final ConcurrentMap<CompoundKey, HttpClient> clients;
+
+    private final ConcurrentMap<CompoundKey, AltSvcCache> altSvcCaches;
+
+    private final ConcurrentMap<String, HttpVersion> raceWinners;
+
+    private final ConcurrentMap<CompoundKey, Http3FailureCache> http3FailureCaches;
+
+    private final InflightRequests inflightRequests;
+
+    private final ConcurrentMap<CompoundKey, BlobStore> blobStores;
+
+    private final ConcurrentMap<Long, PomPrefetch> pomPrefetches;
+
+    private final ConcurrentMap<CompoundKey, TokenBucket> tokenBuckets;
+
+    /**
+     * Closes the states of the dropped session caches.
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    public static GlobalState get(RepositorySystemSession session) {
+        GlobalState cache;
+        RepositoryCache repoCache = session.getCache();
+        if (repoCache == null || !ConfigUtils.getBoolean(session, true, CONFIG_PROP_CACHE_STATE)) {
+            cache = null;
+        } else {
+            Object tmp = repoCache.get(session, KEY);
+            if (tmp instanceof GlobalState) {
+                cache = (GlobalState) tmp;
+            } else {
+                synchronized (GlobalState.class) {
+                    tmp = repoCache.get(session, KEY);
+                    if (tmp instanceof GlobalState) {
+                        cache = (GlobalState) tmp;
+                    } else {
+                        cache = new GlobalState(
+                            OriginExpirations.stateFile(
+                                session, InflightRequests.CONFIG_PROP_COALESCE, InflightRequests.DIR_NAME
+                            )
+                        );
+                        repoCache.put(session, KEY, cache);
+                        // the action must not refer to the cache, which would never become unreachable then
+                        CLEANER.register(repoCache, cache::close);
+                    }
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Ctor.
+     * @param shared Directory of files shared by coalesced requests, see {@link InflightRequests}
+     */
+    private GlobalState(Path shared) {
+        clients = new ConcurrentHashMap<>();
+        altSvcCaches = new ConcurrentHashMap<>();
+        raceWinners = new ConcurrentHashMap<>();
+        http3FailureCaches = new ConcurrentHashMap<>();
+        inflightRequests = new InflightRequests(shared);
+        blobStores = new ConcurrentHashMap<>();
+        pomPrefetches = new ConcurrentHashMap<>();
+        tokenBuckets = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void close() {
+        for (Iterator<Map.Entry<CompoundKey, HttpClient>> it = clients.entrySet().iterator(); it.hasNext(); ) {
+            HttpClient client = it.next().getValue();
+            it.remove();
+            stopClient(client);
+        }
+        for (PomPrefetch prefetch : pomPrefetches.values()) {
+            prefetch.close();
+            HttpTransporter.LOGGER.debug("Prefetch of POMs: {}", prefetch);
+        }
+    }
+
+    public HttpClient getClient(ConnMgrConfig config, HttpVersion version) {
+        return clients.computeIfAbsent(
+            new CompoundKey(version, config), key -> newClient(config, version, true)
+        );
+    }
+
+    /**
+     * Started clients of the session.
+     * @return Clients
+     */
+    Collection<HttpClient> getClients() {
+        return Collections.unmodifiableCollection(clients.values());
+    }
+
+    public AltSvcCache getAltSvcCache(Path file) {
+        return altSvcCaches.computeIfAbsent(new CompoundKey(file), key -> new AltSvcCache(file));
+    }
+
+    public Http3FailureCache getHttp3FailureCache(Path file, int ttl) {
+        return http3FailureCaches.computeIfAbsent(
+            new CompoundKey(file, ttl), key -> new Http3FailureCache(file, ttl)
+        );
+    }
+
+    public BlobStore getBlobStore(Path dir, long maxSize) {
+        return blobStores.computeIfAbsent(new CompoundKey(dir, maxSize), key -> new BlobStore(dir, maxSize));
+    }
+
+    public PomPrefetch getPomPrefetch(long maxBytes) {
+        return pomPrefetches.computeIfAbsent(maxBytes, key -> new PomPrefetch(inflightRequests, maxBytes));
+    }
+
+    public TokenBucket getTokenBucket(String repositoryId, boolean metadata, long rate) {
+        return tokenBuckets.computeIfAbsent(
+            new CompoundKey(repositoryId, metadata, rate), key -> new TokenBucket(rate)
+        );
+    }
+
+    public ConcurrentMap<String, HttpVersion> getRaceWinners() {
+        return raceWinners;
+    }
+
+    public InflightRequests getInflightRequests() {
+        return inflightRequests;
+    }
+
+    /**
+     * Creates and starts a new client for the given protocol version.
+     * @param config Connection config, {@code null} for defaults
+     * @param version Protocol version: {@link HttpVersion#HTTP_3}, {@link HttpVersion#HTTP_2} (negotiated
+     *  via ALPN with fallback to HTTP/1.1) or {@link HttpVersion#HTTP_1_1}
+     * @param shared Whether the client is shared by several transporters; shared clients use daemon threads
+     * @return Started client
+     */
+    public static HttpClient newClient(ConnMgrConfig config, HttpVersion version, boolean shared) {
+        int connectionMaxTtlSeconds = ConfigurationProperties.DEFAULT_HTTP_CONNECTION_MAX_TTL;
+        int maxConnectionsPerRoute = ConfigurationProperties.DEFAULT_HTTP_MAX_CONNECTIONS_PER_ROUTE;
+        int maxConcurrentStreams = DEFAULT_MAX_CONCURRENT_STREAMS;
+        int connectTimeout = ConfigurationProperties.DEFAULT_CONNECT_TIMEOUT;
+        boolean insecure = false;
+        if (config != null) {
+            connectionMaxTtlSeconds = config.connectionMaxTtlSeconds;
+            maxConnectionsPerRoute = config.maxConnectionsPerRoute;
+            maxConcurrentStreams = config.maxConcurrentStreams;
+            connectTimeout = config.connectTimeout;
+            if (ConfigurationProperties.HTTPS_SECURITY_MODE_INSECURE.equals(config.httpsSecurityMode)) {
+                insecure = true;
+            } else if (!ConfigurationProperties.HTTPS_SECURITY_MODE_DEFAULT.equals(config.httpsSecurityMode)) {
+                throw new IllegalArgumentException(
+                    "Unsupported '" + config.httpsSecurityMode + "' HTTPS security mode.");
+            }
+        }
+        final HttpClient client;
+        HTTP3Client h3Client = null;
+        final long maxDuration = TimeUnit.SECONDS.toMillis(connectionMaxTtlSeconds);
+        if (version == HttpVersion.HTTP_3) {
+            if (config != null && config.quicIncompatibility() != null) {
+                throw new IllegalArgumentException(
+                    String.format("HTTP/3 does not support %s", config.quicIncompatibility())
+                );
+            }
+            h3Client = new HTTP3Client();
+            h3Client.getClientConnector().setSslContextFactory(newQuicSslContextFactory(insecure));
+            final HttpClientTransportOverHTTP3 transport = new HttpClientTransportOverHTTP3(h3Client);
+            final int streams = maxConcurrentStreams;
+            transport.setConnectionPoolFactory(destination -> {
+                MultiplexConnectionPool pool = new MultiplexConnectionPool(
+                    destination, destination.getHttpClient().getMaxConnectionsPerDestination(), streams
+                );
+                pool.setMaxDuration(maxDuration);
+                return pool;
+            });
+            client = new HttpClient(transport);
+        } else if (version == HttpVersion.HTTP_2) {
+            final ClientConnector connector = new ClientConnector();
+            final HttpClientTransportDynamic transport = new HttpClientTransportDynamic(
+                connector, HttpClientConnectionFactory.HTTP11,
+                new ClientConnectionFactoryOverHTTP2.HTTP2(new HTTP2Client(connector))
+            );
+            // multiplexing of h2 connections is learnt from the server settings, http/1.1 ones have none
+            transport.setConnectionPoolFactory(destination -> {
+                MultiplexConnectionPool pool = new MultiplexConnectionPool(
+                    destination, destination.getHttpClient().getMaxConnectionsPerDestination(), 1
+                );
+                pool.setMaxDuration(maxDuration);
+                return pool;
+            });
+            client = new HttpClient(transport);
+            client.setSslContextFactory(newSslContextFactory(config, insecure));
+        } else {
+            final HttpClientTransportOverHTTP transport = new HttpClientTransportOverHTTP();
+            transport.setConnectionPoolFactory(destination -> {
+                DuplexConnectionPool pool = new DuplexConnectionPool(
+                    destination, destination.getHttpClient().getMaxConnectionsPerDestination()
+                );
+                pool.setMaxDuration(maxDuration);
+                return pool;
+            });
+            client = new HttpClient(transport);
+            client.setSslContextFactory(newSslContextFactory(config, insecure));
+        }
+        client.setFollowRedirects(true);
+        client.setConnectTimeout(connectTimeout);
+        client.setMaxConnectionsPerDestination(maxConnectionsPerRoute);
+        if (shared) {
+            QueuedThreadPool threadPool = new QueuedThreadPool();
+            threadPool.setName(String.format("http3-transport-%s", version));
+            threadPool.setDaemon(true);
+            client.setExecutor(threadPool);
+        }
+        try {
+            client.start();
+        } catch (Exception e) {
+            throw new UncheckedException(e);
+        }
+        return client;
+    }
+
+    /**
+     * TLS of QUIC connections, configured as far as QUIC can honour the settings, see
+     * {@link ConnMgrConfig#quicIncompatibility()}: trust and the trust store of the JVM, which QUIC does not
+     * read by itself.
+     */
+    private static SslContextFactory.Client newQuicSslContextFactory(boolean insecure) {
+        final SslContextFactory.Client factory = new SslContextFactory.Client();
+        factory.setTrustAll(insecure);
+        if (insecure) {
+            factory.setEndpointIdentificationAlgorithm(null);
+        }
+        final String store = System.getProperty("javax.net.ssl.trustStore");
+        if (store != null && !insecure) {
+            factory.setTrustStorePath(store);
+            factory.setTrustStoreType(System.getProperty("javax.net.ssl.trustStoreType", KeyStore.getDefaultType()));
+            factory.setTrustStorePassword(System.getProperty("javax.net.ssl.trustStorePassword"));
+        }
+        return factory;
+    }
+
+    private static SslContextFactory.Client newSslContextFactory(ConnMgrConfig config, boolean insecure) {
+        SslContextFactory.Client factory = new SslContextFactory.Client();
+        factory.setTrustAll(insecure);
+        if (insecure) {
+            factory.setEndpointIdentificationAlgorithm(null);
+        }
+        if (config != null) {
+            if (config.context != null) {
+                factory.setSslContext(config.context);
+            }
+            if (config.verifier != null) {
+                factory.setHostnameVerifier(config.verifier);
+            }
+            if (config.cipherSuites != null) {
+                factory.setIncludeCipherSuites(config.cipherSuites);
+            }
+            if (config.protocols != null) {
+                factory.setIncludeProtocols(config.protocols);
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Stops and destroys the client, logging failures as there is nothing left to do about them.
+     * @param client Client to stop
+     */
+    public static void stopClient(HttpClient client) {
+        try {
+            client.stop();
+            // destroying dynamic transport would destroy static HttpClientConnectionFactory.HTTP11 it shares
+            if (!(client.getTransport() instanceof HttpClientTransportDynamic)) {
+                client.destroy();
+            }
+        } catch (Exception e) {
+            HttpTransporter.LOGGER.debug("Failed to stop http client {}: {}", client, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Negative cache of origins where HTTP/3 failed (QUIC handshake or request timed out), optionally persisted
+ * to a file under the local repository. HTTP/3 is not tried for such origins until the entry expires
+ * or HTTP/3 request to the origin succeeds, such as a {@link #probe(String) probe} made in the background
+ * after a request over TCP.
+ */
+final class Http3FailureCache {
+
+    /**
+     * Whether HTTP/3 failures are persisted across builds.
+     */
+    static final String CONFIG_PROP_PERSIST = "aether.connector.http3.failures.persist";
+
+    /**
+     * For how long (in seconds) HTTP/3 is not tried for the origin after a failure.
+     */
+    static final String CONFIG_PROP_TTL = "aether.connector.http3.failures.ttl";
+
+    static final int DEFAULT_TTL = (int) TimeUnit.HOURS.toSeconds(1);
+
+    static final String FILE_NAME = "h3-failures.properties";
+
+    /**
+     * Min time in milliseconds between probes of the origin.
+     */
+    static final long PROBE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final OriginExpirations entries;
+
+    private final long ttl;
+
+    /**
+     * Time in millis the next probe of the origin is allowed at, by origin.
+     */
+    private final ConcurrentMap<String, Long> probes = new ConcurrentHashMap<>();
+
+    /**
+     * Ctor.
+     * @param file File to persist entries to, {@code null} to keep them in memory only
+     * @param ttl Time to live of the failure, in seconds
+     */
+    Http3FailureCache(Path file, int ttl) {
+        this.entries = new OriginExpirations(file, "HTTP/3 failures: origin=expiration millis");
+        this.ttl = TimeUnit.SECONDS.toMillis(ttl);
+    }
+
+    /**
+     * Whether HTTP/3 to the origin recently failed.
+     * @param origin Origin, see {@link OriginExpirations#origin(java.net.URI)}
+     * @return True if HTTP/3 should not be tried
+     */
+    boolean isBroken(String origin) {
+        return this.entries.contains(origin);
+    }
+
+    /**
+     * Whether HTTP/3 to the origin marked as broken should be probed now: at most one caller is allowed per
+     * {@link #PROBE_INTERVAL}, the probe calls {@link #succeeded(String)} if it succeeds.
+     * @param origin Origin
+     * @return True if the caller should probe HTTP/3 to the origin
+     */
+    boolean probe(String origin) {
+        boolean res = false;
+        if (this.isBroken(origin)) {
+            final long now = System.currentTimeMillis();
+            final Long next = this.probes.get(origin);
+            if (next == null) {
+                res = this.probes.putIfAbsent(origin, now + PROBE_INTERVAL) == null;
+            } else if (next <= now) {
+                res = this.probes.replace(origin, next, now + PROBE_INTERVAL);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Marks HTTP/3 to the origin as failed.
+     * @param origin Origin
+     */
+    void failed(String origin) {
+        final long now = System.currentTimeMillis();
+        final Long prev = this.entries.put(origin, now + this.ttl);
+        if (prev == null || prev <= now) {
+            HttpTransporter.LOGGER.debug("HTTP/3 to {} marked as broken", origin);
+            this.entries.save();
+        }
+    }
+
+    /**
+     * Marks HTTP/3 to the origin as working.
+     * @param origin Origin
+     */
+    void succeeded(String origin) {
+        if (this.entries.remove(origin)) {
+            HttpTransporter.LOGGER.debug("HTTP/3 to {} works again", origin);
+            this.entries.save();
+        }
+    }
+}
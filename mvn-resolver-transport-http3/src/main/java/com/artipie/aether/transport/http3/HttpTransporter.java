@@ -19,29 +19,51 @@
 package com.artipie.aether.transport.http3;
 
 import com.artipie.aether.transport.http3.checksum.ChecksumExtractor;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
+import java.net.ConnectException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import static java.util.Objects.requireNonNull;
 import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import org.apache.commons.lang3.exception.UncheckedException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.ObjLongConsumer;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.aether.ConfigurationProperties;
@@ -52,27 +74,32 @@ import org.eclipse.aether.spi.connector.transport.AbstractTransporter;
 import org.eclipse.aether.spi.connector.transport.GetTask;
 import org.eclipse.aether.spi.connector.transport.PeekTask;
 import org.eclipse.aether.spi.connector.transport.PutTask;
+import org.eclipse.aether.spi.connector.transport.TransportListener;
 import org.eclipse.aether.spi.connector.transport.TransportTask;
 import org.eclipse.aether.transfer.NoTransporterException;
+import org.eclipse.aether.transfer.TransferCancelledException;
 import org.eclipse.aether.util.ConfigUtils;
 import org.eclipse.aether.util.FileUtils;
+import org.eclipse.jetty.client.AbstractConnectionPool;
 import org.eclipse.jetty.client.BasicAuthentication;
+import org.eclipse.jetty.client.BytesRequestContent;
+import org.eclipse.jetty.client.ConnectionPool;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpRequestException;
 import org.eclipse.jetty.client.HttpResponseException;
 import org.eclipse.jetty.client.InputStreamRequestContent;
-import org.eclipse.jetty.client.InputStreamResponseListener;
+import org.eclipse.jetty.client.PathRequestContent;
 import org.eclipse.jetty.client.Request;
 import org.eclipse.jetty.client.Response;
 import org.eclipse.jetty.http.HttpFieldPreEncoder;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.PreEncodedHttpField;
-import org.eclipse.jetty.http3.client.HTTP3Client;
 import org.eclipse.jetty.http3.client.transport.HttpClientTransportOverHTTP3;
-import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,11 +110,84 @@ final class HttpTransporter extends AbstractTransporter {
 
     static final Logger LOGGER = LoggerFactory.getLogger("http3.plugin");
 
-    private final static Set<String> CENTRAL = Set.of(
-        "repo.maven.apache.org",
-        "oss.sonatype.org",
-        "packages.atlassian.com"
-    );
+    /**
+     * Whether QUIC and TCP connections are raced for origins advertising HTTP/3.
+     */
+    static final String CONFIG_PROP_RACING = "aether.connector.http3.racing";
+
+    /**
+     * Delay in milliseconds before TCP connection is started when racing with QUIC.
+     */
+    static final String CONFIG_PROP_RACING_DELAY = "aether.connector.http3.racing.delay";
+
+    static final int DEFAULT_RACING_DELAY = 300;
+
+    /**
+     * Protocol used over TCP, before HTTP/3 is discovered and as a fallback: {@value #TCP_H2} (negotiated via
+     * ALPN for https, falling back to HTTP/1.1) or {@value #TCP_HTTP11}.
+     */
+    static final String CONFIG_PROP_TCP_PROTOCOL = "aether.connector.http3.tcpProtocol";
+
+    static final String TCP_H2 = "h2";
+
+    static final String TCP_HTTP11 = "http/1.1";
+
+    /**
+     * Whether POMs and metadata are requested with {@code Accept-Encoding: gzip}, other files are always
+     * requested without compression.
+     */
+    static final String CONFIG_PROP_COMPRESSION = "aether.connector.http3.compression";
+
+    /**
+     * Max number of requests of {@link #getAll(Collection)} in flight.
+     */
+    static final String CONFIG_PROP_BATCH_WINDOW = "aether.connector.http3.batch.window";
+
+    static final int DEFAULT_BATCH_WINDOW = 64;
+
+    /**
+     * Directory of prefetched files in the state directory of the local repository.
+     */
+    static final String PREFETCH_DIR_NAME = "prefetch";
+
+    private static final String PREFETCH_PREFIX = "http3-prefetch";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Max length of uploads not backed by a file which are read into memory, longer ones are streamed.
+     */
+    private static final long BUFFERED_UPLOAD = 64L * 1024L;
+
+    /**
+     * Max number of requests of {@link #putAll(List, BiConsumer)} in flight.
+     */
+    static final String CONFIG_PROP_DEPLOY_WINDOW = "aether.connector.http3.deploy.window";
+
+    static final int DEFAULT_DEPLOY_WINDOW = 8;
+
+    /**
+     * Max time in milliseconds to wait for response headers once the connection is established, the connect
+     * timeout applies until then.
+     */
+    static final String CONFIG_PROP_HEADERS_TIMEOUT = "aether.connector.http3.headersTimeout";
+
+    static final int DEFAULT_HEADERS_TIMEOUT = 60 * 1000;
+
+    /**
+     * RFC 9218 priority header, see {@link RequestPriorities}.
+     */
+    static final String PRIORITY = "Priority";
+
+    /**
+     * Extensions of the compressible (XML) files.
+     */
+    private static final String[] COMPRESSIBLE = {".pom", ".xml"};
+
+    /**
+     * Settings disabling HTTP/3 which were logged, so that each is logged once.
+     */
+    private static final Set<String> WARNED = ConcurrentHashMap.newKeySet();
 
     private final Map<String, ChecksumExtractor> checksumExtractors;
 
@@ -97,11 +197,127 @@ final class HttpTransporter extends AbstractTransporter {
 
     private final URI baseUri;
 
+    private final String origin;
+
+    private final AltSvcCache altSvc;
+
+    private final GlobalState globalState;
+
+    private final ConcurrentMap<String, HttpVersion> raceWinners;
+
+    /**
+     * Registry of in-flight requests shared by the transporters of the session, {@code null} if disabled.
+     */
+    private final InflightRequests inflight;
+
+    private final String repositoryId;
+
+    /**
+     * Prefetch of POMs referenced by downloaded POMs, {@code null} if disabled.
+     */
+    private final PomPrefetch pomPrefetch;
+
+    /**
+     * Requests sent ahead by {@link #getAll(Collection)}, by task.
+     */
+    private final ConcurrentMap<GetTask, Exchange> presented = new ConcurrentHashMap<>();
+
+    /**
+     * Tasks of {@link #prefetch(Collection)} whose downloads are parked for the next request, with the flights
+     * registered for them ahead.
+     */
+    private final ConcurrentMap<GetTask, InflightRequests.Flight> prefetches = new ConcurrentHashMap<>();
+
+    /**
+     * Directory of the files of {@link #prefetch(Collection)} next to the local repository, so that they are
+     * linked rather than copied, {@code null} to use the temporary directory.
+     */
+    private final Path prefetchDir;
+
+    private final int batchWindow;
+
+    private final int deployWindow;
+
+    private final ChecksumSidecars sidecars;
+
+    /**
+     * Checksums declared in headers of uploads, {@code null} if disabled.
+     */
+    private final UploadChecksums uploadChecksums;
+
+    private final Http3FailureCache http3Failures;
+
+    private final PartialDownloads partials;
+
+    private final ValidatorStore validators;
+
+    /**
+     * Store of downloaded files by checksum, {@code null} if disabled.
+     */
+    private final BlobStore blobs;
+
+    private final int segments;
+
+    private final long segmentsThreshold;
+
+    /**
+     * Whether to download in segments over HTTP/1.1, see {@link SegmentedDownload#CONFIG_PROP_HTTP11}.
+     */
+    private final boolean segmentsOverHttp11;
+
+    private final boolean preallocate;
+
+    private final List<String> checksumAlgorithms;
+
+    private final boolean racing;
+
+    /**
+     * Whether HTTP/3 can be used: the repository is {@code https} and QUIC supports its TLS configuration,
+     * see {@link ConnMgrConfig#quicIncompatibility()}.
+     */
+    private final boolean quic;
+
+    private final int racingDelay;
+
+    private final boolean compression;
+
     private HttpClient http3Client;
     private HttpClient httpClient = null;
 
+    private final HttpVersion tcpVersion;
+
     private final int connectTimeout;
+
+    /**
+     * Max time in milliseconds to wait for response headers once connected.
+     */
+    private final int headersTimeout;
+
+    /**
+     * Max time in milliseconds without data received, {@code 0} for no limit.
+     */
+    private final int requestTimeout;
+
+    /**
+     * Min throughput of response bodies in bytes per second, {@code 0} for no limit, see {@link ThroughputFloor}.
+     */
+    private final long minThroughput;
+
+    private final int throughputPeriod;
+
+    /**
+     * Bandwidth limit of artifact transfers, {@code null} if not limited.
+     */
+    private final TokenBucket artifactBucket;
+
+    /**
+     * Bandwidth limit of metadata transfers, {@code null} if not limited.
+     */
+    private final TokenBucket metadataBucket;
+
+    private final RequestPriorities priorities;
     private final String httpsSecurityMode;
+    private final ConnMgrConfig connMgrConfig;
 
     private String[] authInfo = null;
 
@@ -152,45 +368,203 @@ final class HttpTransporter extends AbstractTransporter {
             ConfigurationProperties.CONNECT_TIMEOUT + "." + repository.getId(),
             ConfigurationProperties.CONNECT_TIMEOUT
         );
-        this.chooseClient();
+        this.requestTimeout = ConfigUtils.getInteger(
+            session,
+            ConfigurationProperties.DEFAULT_REQUEST_TIMEOUT,
+            ConfigurationProperties.REQUEST_TIMEOUT + "." + repository.getId(),
+            ConfigurationProperties.REQUEST_TIMEOUT
+        );
+        this.headersTimeout = ConfigUtils.getInteger(
+            session,
+            DEFAULT_HEADERS_TIMEOUT,
+            CONFIG_PROP_HEADERS_TIMEOUT + "." + repository.getId(),
+            CONFIG_PROP_HEADERS_TIMEOUT
+        );
+        this.minThroughput = ConfigUtils.getLong(
+            session, 0L,
+            ThroughputFloor.CONFIG_PROP_MIN_THROUGHPUT + "." + repository.getId(),
+            ThroughputFloor.CONFIG_PROP_MIN_THROUGHPUT
+        );
+        this.throughputPeriod = ConfigUtils.getInteger(
+            session, ThroughputFloor.DEFAULT_PERIOD, ThroughputFloor.CONFIG_PROP_PERIOD
+        );
+        final int connectionMaxTtlSeconds = ConfigUtils.getInteger(
+            session,
+            ConfigurationProperties.DEFAULT_HTTP_CONNECTION_MAX_TTL,
+            ConfigurationProperties.HTTP_CONNECTION_MAX_TTL + "." + repository.getId(),
+            ConfigurationProperties.HTTP_CONNECTION_MAX_TTL
+        );
+        final int maxConnectionsPerRoute = ConfigUtils.getInteger(
+            session,
+            ConfigurationProperties.DEFAULT_HTTP_MAX_CONNECTIONS_PER_ROUTE,
+            ConfigurationProperties.HTTP_MAX_CONNECTIONS_PER_ROUTE + "." + repository.getId(),
+            ConfigurationProperties.HTTP_MAX_CONNECTIONS_PER_ROUTE
+        );
+        final int maxConcurrentStreams = ConfigUtils.getInteger(
+            session,
+            GlobalState.DEFAULT_MAX_CONCURRENT_STREAMS,
+            GlobalState.CONFIG_PROP_MAX_CONCURRENT_STREAMS + "." + repository.getId(),
+            GlobalState.CONFIG_PROP_MAX_CONCURRENT_STREAMS
+        );
+        final String tcpProtocol = ConfigUtils.getString(
+            session, TCP_H2, CONFIG_PROP_TCP_PROTOCOL + "." + repository.getId(), CONFIG_PROP_TCP_PROTOCOL
+        );
+        if (TCP_H2.equals(tcpProtocol)) {
+            this.tcpVersion = HttpVersion.HTTP_2;
+        } else if (TCP_HTTP11.equals(tcpProtocol)) {
+            this.tcpVersion = HttpVersion.HTTP_1_1;
+        } else {
+            throw new IllegalArgumentException(
+                String.format("Unsupported '%s' value of %s", tcpProtocol, CONFIG_PROP_TCP_PROTOCOL)
+            );
+        }
+        this.connMgrConfig = new ConnMgrConfig(
+            session, this.repoAuthContext, this.httpsSecurityMode, connectionMaxTtlSeconds,
+            maxConnectionsPerRoute, maxConcurrentStreams, this.connectTimeout
+        );
+        final String incompatibility = this.connMgrConfig.quicIncompatibility();
+        this.quic = incompatibility == null && "https".equalsIgnoreCase(this.baseUri.getScheme());
+        if (incompatibility != null && WARNED.add(incompatibility)) {
+            LOGGER.warn("HTTP/3 is disabled, QUIC does not support the configured {}", incompatibility);
+        }
+        this.globalState = GlobalState.get(session);
+        this.origin = OriginExpirations.origin(this.baseUri);
+        final Path altSvcFile = OriginExpirations.stateFile(
+            session, AltSvcCache.CONFIG_PROP_PERSIST, AltSvcCache.FILE_NAME
+        );
+        final Path failuresFile = OriginExpirations.stateFile(
+            session, Http3FailureCache.CONFIG_PROP_PERSIST, Http3FailureCache.FILE_NAME
+        );
+        final int failuresTtl = ConfigUtils.getInteger(
+            session, Http3FailureCache.DEFAULT_TTL, Http3FailureCache.CONFIG_PROP_TTL
+        );
+        if (this.globalState == null) {
+            this.altSvc = new AltSvcCache(altSvcFile);
+            this.raceWinners = new ConcurrentHashMap<>();
+            this.http3Failures = new Http3FailureCache(failuresFile, failuresTtl);
+            this.inflight = null;
+        } else {
+            this.altSvc = this.globalState.getAltSvcCache(altSvcFile);
+            this.raceWinners = this.globalState.getRaceWinners();
+            this.http3Failures = this.globalState.getHttp3FailureCache(failuresFile, failuresTtl);
+            this.inflight = ConfigUtils.getBoolean(session, true, InflightRequests.CONFIG_PROP_COALESCE)
+                ? this.globalState.getInflightRequests() : null;
+        }
+        this.repositoryId = repository.getId();
+        final boolean prefetch = ConfigUtils.getBoolean(
+            session, false,
+            PomPrefetch.CONFIG_PROP_PREFETCH + "." + repository.getId(), PomPrefetch.CONFIG_PROP_PREFETCH
+        );
+        this.pomPrefetch = this.inflight != null && prefetch ? this.globalState.getPomPrefetch(
+            ConfigUtils.getLong(session, PomPrefetch.DEFAULT_MAX_BYTES, PomPrefetch.CONFIG_PROP_MAX_BYTES)
+        ) : null;
+        this.artifactBucket = this.tokenBucket(
+            session, repository.getId(), false, TokenBucket.CONFIG_PROP_MAX_BYTES_PER_SECOND
+        );
+        this.metadataBucket = this.tokenBucket(
+            session, repository.getId(), true, TokenBucket.CONFIG_PROP_METADATA_MAX_BYTES_PER_SECOND
+        );
+        this.priorities = RequestPriorities.of(session, repository.getId());
+        this.sidecars = new ChecksumSidecars(
+            ConfigUtils.getString(
+                session, "", ChecksumSidecars.CONFIG_PROP_SIDECARS + "." + repository.getId(),
+                ChecksumSidecars.CONFIG_PROP_SIDECARS
+            )
+        );
+        this.uploadChecksums = ConfigUtils.getBoolean(
+            session, false, UploadChecksums.CONFIG_PROP_HEADERS + "." + repository.getId(),
+            UploadChecksums.CONFIG_PROP_HEADERS
+        ) ? new UploadChecksums(
+            ConfigUtils.getBoolean(
+                session, false, UploadChecksums.CONFIG_PROP_SKIP_SIDECARS + "." + repository.getId(),
+                UploadChecksums.CONFIG_PROP_SKIP_SIDECARS
+            )
+        ) : null;
+        this.batchWindow = ConfigUtils.getInteger(
+            session, DEFAULT_BATCH_WINDOW, CONFIG_PROP_BATCH_WINDOW + "." + repository.getId(), CONFIG_PROP_BATCH_WINDOW
+        );
+        this.deployWindow = ConfigUtils.getInteger(
+            session, DEFAULT_DEPLOY_WINDOW, CONFIG_PROP_DEPLOY_WINDOW + "." + repository.getId(),
+            CONFIG_PROP_DEPLOY_WINDOW
+        );
+        final Path blobsDir = ConfigUtils.getBoolean(session, false, BlobStore.CONFIG_PROP_BLOBS)
+            ? OriginExpirations.stateFile(session, BlobStore.CONFIG_PROP_BLOBS, BlobStore.DIR_NAME) : null;
+        final long blobsSize = ConfigUtils.getLong(session, BlobStore.DEFAULT_MAX_SIZE, BlobStore.CONFIG_PROP_MAX_SIZE);
+        if (blobsDir == null) {
+            this.blobs = null;
+        } else if (this.globalState == null) {
+            this.blobs = new BlobStore(blobsDir, blobsSize);
+        } else {
+            this.blobs = this.globalState.getBlobStore(blobsDir, blobsSize);
+        }
+        this.partials = new PartialDownloads(
+            OriginExpirations.stateFile(session, PartialDownloads.CONFIG_PROP_RESUME, PartialDownloads.DIR_NAME)
+        );
+        this.prefetchDir = OriginExpirations.stateFile(
+            session, BatchRepositoryConnectorFactory.CONFIG_PROP_BATCH, PREFETCH_DIR_NAME
+        );
+        this.validators = new ValidatorStore(
+            ConfigUtils.getBoolean(session, false, ValidatorStore.CONFIG_PROP_CONDITIONAL)
+                ? OriginExpirations.stateFile(session, ValidatorStore.CONFIG_PROP_CONDITIONAL, ValidatorStore.DIR_NAME)
+                : null
+        );
+        this.segments = ConfigUtils.getInteger(
+            session, SegmentedDownload.DEFAULT_SEGMENTS,
+            SegmentedDownload.CONFIG_PROP_SEGMENTS + "." + repository.getId(), SegmentedDownload.CONFIG_PROP_SEGMENTS
+        );
+        this.segmentsThreshold = ConfigUtils.getLong(
+            session, SegmentedDownload.DEFAULT_THRESHOLD, SegmentedDownload.CONFIG_PROP_THRESHOLD
+        );
+        this.segmentsOverHttp11 = ConfigUtils.getBoolean(session, false, SegmentedDownload.CONFIG_PROP_HTTP11);
+        this.preallocate = ConfigUtils.getBoolean(session, false, PreallocatedFile.CONFIG_PROP_PREALLOCATE);
+        final List<String> algorithms = DigestingListener.algorithms(
+            ConfigUtils.getString(
+                session, DigestingListener.DEFAULT_ALGORITHMS, DigestingListener.CONFIG_PROP_ALGORITHMS
+            )
+        );
+        // blobs are stored by the checksums computed during downloads
+        this.checksumAlgorithms = algorithms.isEmpty() && this.blobs != null
+            ? Collections.singletonList("SHA-1") : algorithms;
+        this.compression = ConfigUtils.getBoolean(
+            session, false, CONFIG_PROP_COMPRESSION + "." + repository.getId(), CONFIG_PROP_COMPRESSION
+        );
+        this.racing = ConfigUtils.getBoolean(
+            session, true, CONFIG_PROP_RACING + "." + repository.getId(), CONFIG_PROP_RACING
+        );
+        this.racingDelay = ConfigUtils.getInteger(
+            session, DEFAULT_RACING_DELAY,
+            CONFIG_PROP_RACING_DELAY + "." + repository.getId(), CONFIG_PROP_RACING_DELAY
+        );
     }
 
-    private HttpClient initOrGetHttpClient() {
+    private synchronized HttpClient initOrGetHttpClient() {
         if (this.httpClient == null) {
-            this.httpClient = new HttpClient();
-            this.httpClient.setFollowRedirects(true);
-            this.httpClient.setConnectTimeout(connectTimeout);
-            SslContextFactory.Client sslContextFactory = new SslContextFactory.Client();
-            sslContextFactory.setTrustAll(httpsSecurityMode.equals(ConfigurationProperties.HTTPS_SECURITY_MODE_INSECURE));
-            httpClient.setSslContextFactory(sslContextFactory);
-            try {
-                this.httpClient.start();
-            } catch (Exception e) {
-                throw new UncheckedException(e);
-            }
+            this.httpClient = this.newClient(this.tcpVersion);
         }
         return this.httpClient;
     }
 
-    private HttpClient initOrGetHttp3Client() {
+    private synchronized HttpClient initOrGetHttp3Client() {
         if (this.http3Client == null) {
-            HTTP3Client h3Client = new HTTP3Client();
-            HttpClientTransportOverHTTP3 transport = new HttpClientTransportOverHTTP3(h3Client);
-            this.http3Client = new HttpClient(transport);
-            this.http3Client.setFollowRedirects(true);
-            this.http3Client.setConnectTimeout(connectTimeout);
-            try {
-                this.http3Client.start();
-                h3Client.getClientConnector().getSslContextFactory().setTrustAll(
-                    httpsSecurityMode.equals(ConfigurationProperties.HTTPS_SECURITY_MODE_INSECURE)
-                );
-            } catch (Exception e) {
-                throw new UncheckedException(e);
-            }
+            this.http3Client = this.newClient(HttpVersion.HTTP_3);
         }
         return this.http3Client;
     }
 
+    /**
+     * Obtains client for the protocol version: shared one from the session {@link GlobalState} when available,
+     * otherwise a new client owned (and closed) by this transporter.
+     */
+    private HttpClient newClient(final HttpVersion version) {
+        final HttpClient res;
+        if (this.globalState == null) {
+            res = GlobalState.newClient(this.connMgrConfig, version, false);
+        } else {
+            res = this.globalState.getClient(this.connMgrConfig, version);
+        }
+        return res;
+    }
+
     @Override
     public int classify(Throwable error) {
         if (error instanceof HttpResponseException) {
@@ -201,33 +575,492 @@ final class HttpTransporter extends AbstractTransporter {
 
     @Override
     protected void implPeek(PeekTask task) throws Exception {
-        this.makeRequest(HttpMethod.HEAD, task, null, this.chooseClient());
+        final InflightRequests.Flight flight = this.flight(HttpMethod.HEAD, task);
+        if (flight == null || flight.leader()) {
+            try {
+                this.makeRequest(HttpMethod.HEAD, task, null, this.chooseClient(), HttpFields.EMPTY).getKey().close();
+            } catch (final Throwable ex) {
+                if (flight != null) {
+                    flight.fail(ex);
+                }
+                throw ex;
+            }
+            if (flight != null) {
+                flight.complete(null, null, HttpFields.EMPTY);
+            }
+        } else {
+            // existence check has no content, the outcome of the leader is the answer, failure included
+            flight.await().release();
+        }
     }
 
     @Override
     protected void implGet(GetTask task) throws Exception {
-        final Pair<InputStream, HttpFields> response =
-            this.makeRequest(HttpMethod.GET, task, null, this.chooseClient());
-        final boolean resume = false;
+        if (this.checksumAlgorithms.isEmpty()) {
+            this.get(task, null);
+        } else {
+            final TransportListener listener = task.getListener();
+            final DigestingListener digests = new DigestingListener(listener, this.checksumAlgorithms);
+            task.setListener(digests);
+            try {
+                this.get(task, digests);
+            } finally {
+                task.setListener(listener);
+            }
+        }
+    }
+
+    /**
+     * Downloads the resource, or waits for the concurrent download of the same URL and reads its result.
+     * @param task Task
+     * @param digests Listener computing checksums of the content, {@code null} if disabled
+     */
+    private void get(GetTask task, DigestingListener digests) throws Exception {
+        final byte[] sidecar = this.sidecars.take(this.url(task), this.connectTimeout);
+        if (sidecar != null) {
+            LOGGER.debug("{} was requested along with its resource", task.getLocation());
+            utilGet(task, new ByteArrayInputStream(sidecar), true, sidecar.length, false);
+            return;
+        }
+        InflightRequests.Flight flight = this.prefetches.get(task);
+        if (flight == null) {
+            flight = this.flight(HttpMethod.GET, task);
+        }
+        if (flight == null) {
+            this.fetch(task, digests);
+            this.prefetchReferences(task);
+        } else if (flight.leader()) {
+            final HttpFields headers;
+            try {
+                headers = this.fetch(task, digests);
+            } catch (final Throwable ex) {
+                flight.fail(ex);
+                throw ex;
+            }
+            final File file = task.getDataFile();
+            if (file != null && this.prefetches.containsKey(task)) {
+                flight.park(file.toPath(), null, headers);
+            } else {
+                flight.complete(
+                    file == null ? null : file.toPath(), file == null ? task.getDataBytes() : null, headers
+                );
+            }
+            this.prefetchReferences(task);
+        } else {
+            final Exchange sent = this.presented.remove(task);
+            if (sent != null) {
+                sent.abort(new IOException("Download is shared"));
+            }
+            InflightRequests.Shared shared = null;
+            try {
+                shared = flight.await();
+            } catch (final InterruptedException ex) {
+                throw ex;
+            } catch (final Exception ex) {
+                LOGGER.debug("Shared download of {} failed, retrying: {}", task.getLocation(), ex.getMessage());
+            }
+            if (shared == null) {
+                this.fetch(task, digests);
+            } else {
+                if (this.pomPrefetch != null) {
+                    this.pomPrefetch.served(this.url(task));
+                }
+                try {
+                    this.reuse(task, shared, digests);
+                } finally {
+                    shared.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Prefetches the POMs referenced by the downloaded POM, see {@link PomPrefetch}.
+     * @param task Completed task
+     */
+    private void prefetchReferences(GetTask task) {
+        if (this.pomPrefetch == null || !PomPrefetch.applicable(task.getLocation())) {
+            return;
+        }
+        final HttpClient client = this.chooseClient();
+        try (InputStream pom = task.getDataFile() == null
+            ? new ByteArrayInputStream(task.getDataBytes()) : Files.newInputStream(task.getDataFile().toPath())) {
+            this.pomPrefetch.prefetch(
+                this.repositoryId, this.baseUri, url -> this.newRequest(client, url, HttpMethod.GET),
+                client.getExecutor(), pom
+            );
+        } catch (final IOException ex) {
+            LOGGER.debug("Failed to read {} for prefetch: {}", task.getLocation(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Downloads the tasks pipelining their requests: up to {@link #CONFIG_PROP_BATCH_WINDOW} requests are in flight
+     * as concurrent streams over the multiplexed connection. Each task is completed on the executor of the client
+     * as soon as its response headers arrive, and the next request is sent once a task is over, so that a slow
+     * response does not hold back the others and no thread waits per request in flight.
+     * @param tasks Tasks
+     * @return Failures by task, empty if all tasks succeeded
+     * @throws InterruptedException If interrupted
+     */
+    Map<GetTask, Exception> getAll(Collection<GetTask> tasks) throws InterruptedException {
+        final Batch batch = new Batch(tasks);
+        try {
+            return batch.start().get();
+        } catch (final InterruptedException ex) {
+            batch.cancel();
+            throw ex;
+        } catch (final ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Uploads the tasks pipelining their requests: up to {@link #CONFIG_PROP_DEPLOY_WINDOW} requests are sent
+     * ahead as concurrent streams over the multiplexed connection, while the calling thread awaits the responses
+     * one by one, in order, reporting each task as soon as its response is received.
+     * @param tasks Tasks
+     * @param done Receives each task, in order, with its failure or {@code null} if it succeeded
+     * @throws InterruptedException If interrupted
+     */
+    void putAll(List<PutTask> tasks, BiConsumer<PutTask, Exception> done) throws InterruptedException {
+        final int size = tasks.size();
+        final Exchange[] exchanges = new Exchange[size];
+        final Request.Content[] contents = new Request.Content[size];
+        final HttpFields[] headers = new HttpFields[size];
+        final Exception[] failures = new Exception[size];
+        int sent = 0;
+        try {
+            for (int idx = 0; idx < size; ++idx) {
+                for (; sent < size && sent < idx + Math.max(1, this.deployWindow); ++sent) {
+                    final PutTask next = tasks.get(sent);
+                    final HttpClient client = this.chooseClient();
+                    try {
+                        if (this.redundant(next)) {
+                            continue;
+                        }
+                        headers[sent] = this.putHeaders(next);
+                        contents[sent] = this.putContent(next, client);
+                        exchanges[sent] = this.send(HttpMethod.PUT, next, contents[sent], client, headers[sent]);
+                    } catch (final IOException | TransferCancelledException ex) {
+                        failures[sent] = ex;
+                    }
+                }
+                if (exchanges[idx] != null) {
+                    try {
+                        this.complete(exchanges[idx], tasks.get(idx), contents[idx], headers[idx])
+                            .getKey().close();
+                    } catch (final Exception ex) {
+                        failures[idx] = ex;
+                    }
+                    exchanges[idx] = null;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                done.accept(tasks.get(idx), failures[idx]);
+            }
+        } finally {
+            for (final Exchange exchange : exchanges) {
+                if (exchange != null) {
+                    exchange.abort(new IOException("Deploy is over"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Downloads the resources ahead of their requests, which then read the downloads instead of going to the
+     * network, see {@link InflightRequests}. Flights of the resources are registered at once, so that requests
+     * arriving before their download is over wait for it, and the downloads run as a {@link Batch} on the
+     * executor of the client: the method returns right away.
+     * @param locations Locations of the resources
+     * @return Waits for the downloads and drops the ones not requested since
+     */
+    Runnable prefetch(Collection<URI> locations) {
+        if (this.inflight == null || locations.isEmpty()) {
+            return () -> { };
+        }
+        final List<GetTask> tasks = new ArrayList<>(locations.size());
+        try {
+            if (this.prefetchDir != null) {
+                Files.createDirectories(this.prefetchDir);
+            }
+            for (final URI location : locations) {
+                final Path file = this.prefetchDir == null ? Files.createTempFile(PREFETCH_PREFIX, TMP_SUFFIX)
+                    : Files.createTempFile(this.prefetchDir, PREFETCH_PREFIX, TMP_SUFFIX);
+                final GetTask task = new GetTask(location).setDataFile(file.toFile());
+                final InflightRequests.Flight flight = this.inflight.lead(
+                    HttpMethod.GET, this.repositoryId, this.url(task)
+                );
+                if (flight == null) {
+                    // requested already, or listed twice
+                    Files.delete(file);
+                } else {
+                    tasks.add(task);
+                    this.prefetches.put(task, flight);
+                }
+            }
+        } catch (final IOException ex) {
+            LOGGER.debug("Failed to prefetch: {}", ex.getMessage());
+        }
+        final Batch batch = new Batch(tasks);
+        final CompletableFuture<?> done = batch.start().whenComplete((ignored, err) -> this.dropPrefetches(tasks));
+        return () -> {
+            try {
+                done.get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                batch.cancel();
+            } catch (final ExecutionException ex) {
+                LOGGER.debug("Failed to prefetch: {}", ex.getMessage());
+            }
+            for (final GetTask task : tasks) {
+                this.inflight.unpark(HttpMethod.GET, this.repositoryId, this.url(task));
+            }
+        };
+    }
+
+    /**
+     * Fails the flights of {@link #prefetch(Collection)} left over and deletes the downloaded files, parked
+     * downloads are shared by their own links.
+     * @param tasks Tasks whose flights are registered
+     */
+    private void dropPrefetches(List<GetTask> tasks) {
+        for (final GetTask task : tasks) {
+            final InflightRequests.Flight flight = this.prefetches.remove(task);
+            if (flight != null && !flight.settled()) {
+                flight.fail(new IOException("Prefetch is over"));
+            }
+            try {
+                Files.deleteIfExists(task.getDataFile().toPath());
+            } catch (final IOException ex) {
+                LOGGER.debug("Failed to delete {}: {}", task.getDataFile(), ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Executor of the clients, running the completions of {@link Batch} tasks.
+     */
+    private Executor executor() {
+        return Optional.ofNullable(this.httpClient).orElseGet(this::initOrGetHttpClient).getExecutor();
+    }
+
+    /**
+     * Whether the request of the task can be sent ahead: it has no partial download to resume and no stored
+     * content to validate.
+     */
+    private boolean pipelined(GetTask task) {
+        final String url = this.url(task);
+        return (task.getDataFile() == null || this.partials.data(url) == null)
+            && (!this.validators.applicable(task.getLocation()) || this.validators.data(url) == null);
+    }
+
+    private String url(TransportTask task) {
+        return this.baseUri.resolve(task.getLocation()).toString();
+    }
+
+    /**
+     * Reads the download of the flight leader as if it was downloaded for the task.
+     */
+    private void reuse(GetTask task, InflightRequests.Shared shared, DigestingListener digests) throws Exception {
+        try (InputStream is = shared.open()) {
+            utilGet(task, is, true, shared.length(), false);
+        }
+        this.verifyChecksums(task, digests, shared.headers());
+        extractChecksums(shared.headers(), task);
+        if (task.getDataFile() != null && shared.file() != null) {
+            Files.setLastModifiedTime(task.getDataFile().toPath(), Files.getLastModifiedTime(shared.file()));
+        }
+    }
+
+    /**
+     * Joins the in-flight request of the task URL.
+     * @return Flight, {@code null} if requests are not coalesced
+     */
+    private InflightRequests.Flight flight(HttpMethod method, TransportTask task) {
+        InflightRequests.Flight res = null;
+        if (this.inflight != null) {
+            res = this.inflight.join(method, this.repositoryId, this.url(task));
+        }
+        return res;
+    }
+
+    /**
+     * Downloads the resource from the network, retrying downloads received below the min throughput.
+     * @param task Task
+     * @param digests Listener computing checksums of the content, {@code null} if disabled
+     * @return Response headers
+     */
+    private HttpFields fetch(GetTask task, DigestingListener digests) throws Exception {
+        for (int attempt = 0; ; ++attempt) {
+            try {
+                return this.fetchOnce(task, digests);
+            } catch (final ThroughputFloor.SlowTransferException ex) {
+                if (attempt >= ThroughputFloor.RETRIES) {
+                    throw ex;
+                }
+                // the received part is kept as a partial download, so the retry resumes it
+                LOGGER.debug("Retrying slow download of {}: {}", task.getLocation(), ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Downloads the resource from the network once.
+     * @param task Task
+     * @param digests Listener computing checksums of the content, {@code null} if disabled
+     * @return Response headers
+     */
+    private HttpFields fetchOnce(GetTask task, DigestingListener digests) throws Exception {
+        final String url = this.baseUri.resolve(task.getLocation()).toString();
         final File dataFile = task.getDataFile();
-        long length = Long.parseLong(
+        final Path partial = dataFile == null ? null : this.partials.data(url);
+        final boolean conditional = this.validators.applicable(task.getLocation());
+        final Path stored = conditional ? this.validators.data(url) : null;
+        long requested = 0L;
+        Exchange sent = this.presented.remove(task);
+        if (sent != null && (partial != null || stored != null)) {
+            // sent ahead before a partial download or stored content of the task appeared
+            sent.abort(new IOException("Request is conditional"));
+            sent = null;
+        }
+        Pair<ResponseContent, HttpFields> response;
+        if (sent != null) {
+            response = this.complete(sent, task, null, HttpFields.EMPTY);
+        } else if (partial == null) {
+            response = this.makeRequest(
+                HttpMethod.GET, task, null, this.chooseClient(),
+                stored == null ? HttpFields.EMPTY : this.validators.conditions(stored)
+            );
+        } else {
+            requested = Files.size(partial);
+            try {
+                response = this.makeRequest(
+                    HttpMethod.GET, task, null, this.chooseClient(),
+                    HttpFields.build()
+                        .add(HttpHeader.RANGE, "bytes=" + requested + '-')
+                        .add(HttpHeader.IF_RANGE, this.partials.validator(partial))
+                        .add(HttpHeader.ACCEPT_ENCODING, "identity")
+                );
+            } catch (final HttpRequestException ex) {
+                LOGGER.debug("Resuming {} failed, downloading from scratch: {}", url, ex.getMessage());
+                this.partials.discard(url);
+                requested = 0L;
+                response = this.makeRequest(HttpMethod.GET, task, null, this.chooseClient(), HttpFields.EMPTY);
+            }
+        }
+        if (stored != null && response.getKey().status() == HttpStatus.NOT_MODIFIED_304) {
+            response.getKey().close();
+            LOGGER.debug("{} is not modified, using stored content", url);
+            try (InputStream is = Files.newInputStream(stored)) {
+                utilGet(task, is, true, Files.size(stored), false);
+            }
+            return response.getValue();
+        }
+        if (this.sidecars.enabled() && this.declaredChecksums(response.getValue()) == null) {
+            // checksum files are requested next, their requests go out while this one downloads
+            final HttpClient client = this.chooseClient();
+            this.sidecars.speculate(
+                task.getLocation(), url, sidecarUrl -> this.newRequest(client, sidecarUrl, HttpMethod.GET)
+            );
+        }
+        long offset;
+        try {
+            offset = PartialDownloads.offset(
+                response.getValue(), requested, partial == null ? -1L : this.partials.length(partial)
+            );
+        } catch (final IOException ex) {
+            response.getKey().close();
+            this.partials.discard(url);
+            if (requested == 0L) {
+                throw ex;
+            }
+            LOGGER.debug("Resuming {} failed, downloading from scratch: {}", url, ex.getMessage());
+            requested = 0L;
+            response = this.makeRequest(HttpMethod.GET, task, null, this.chooseClient(), HttpFields.EMPTY);
+            offset = PartialDownloads.offset(response.getValue(), 0L, -1L);
+        }
+        final boolean resume = offset > 0L;
+        long length = offset + Long.parseLong(
             Optional.ofNullable(response.getValue().get(HttpHeader.CONTENT_LENGTH)).orElse("0")
         );
-        if (dataFile == null) {
-            try (final InputStream is = response.getKey()) {
+        if (response.getValue().contains(HttpHeader.CONTENT_ENCODING)) {
+            // content is decoded as it streams, its length is not known in advance
+            length = -1L;
+        }
+        final SeekableByteChannel blob = this.blobs == null || resume || dataFile == null
+            ? null : this.blobs.open(this.declaredChecksums(response.getValue()));
+        if (blob != null) {
+            // the body is already in the store, downloaded from this or another repository
+            response.getKey().close();
+            LOGGER.debug("{} is served from the blob store", url);
+            final long size = blob.size();
+            try (InputStream is = Channels.newInputStream(blob)) {
+                utilGet(task, is, true, size, false);
+            }
+            if (partial != null) {
+                this.partials.discard(url);
+            }
+        } else if (dataFile == null) {
+            try (ResponseContent content = response.getKey(); InputStream is = content.stream()) {
                 utilGet(task, is, true, length, resume);
-                extractChecksums(response.getValue(), task);
+                this.verifyChecksums(task, digests, response.getValue());
             }
         } else {
             try (FileUtils.CollocatedTempFile tempFile = FileUtils.newTempFile(dataFile.toPath())) {
-                task.setDataFile(tempFile.getPath().toFile());
-                try (final InputStream is = response.getKey()) {
-                    utilGet(task, is, true, length, resume);
+                if (resume) {
+                    Files.move(partial, tempFile.getPath(), StandardCopyOption.REPLACE_EXISTING);
                 }
+                task.setDataFile(tempFile.getPath().toFile(), resume);
+                // segments over HTTP/1.1 would open a connection each
+                final boolean multiplexed = this.segmentsOverHttp11
+                    || SegmentedDownload.multiplexed(response.getKey().version());
+                if (resume || !multiplexed || !SegmentedDownload.applicable(
+                    response.getValue(), length, this.segmentsThreshold, this.segments
+                )) {
+                    try {
+                        download(task, response.getKey(), tempFile.getPath(), offset, length);
+                    } catch (final IOException ex) {
+                        this.partials.keep(
+                            url, tempFile.getPath(), PartialDownloads.validator(response.getValue()), length
+                        );
+                        throw ex;
+                    }
+                } else {
+                    final HttpClient client = this.chooseClient();
+                    final boolean done = new SegmentedDownload(
+                        () -> this.newRequest(client, url, HttpMethod.GET),
+                        PartialDownloads.validator(response.getValue()), length, this.segments, task.getListener(),
+                        this.pacer(task.getLocation(), client), this.requestTimeout
+                    ).download(response.getKey(), tempFile.getPath(), this.preallocate);
+                    if (!done) {
+                        response = this.makeRequest(HttpMethod.GET, task, null, client, HttpFields.EMPTY);
+                        length = Long.parseLong(
+                            Optional.ofNullable(response.getValue().get(HttpHeader.CONTENT_LENGTH)).orElse("0")
+                        );
+                        download(task, response.getKey(), tempFile.getPath(), 0L, length);
+                    }
+                }
+                final Map<String, String> computed = this.verifyChecksums(task, digests, response.getValue());
                 tempFile.move();
+                if (this.blobs != null) {
+                    this.blobs.insert(dataFile.toPath(), computed);
+                }
             } finally {
                 task.setDataFile(dataFile);
             }
+            if (partial != null) {
+                this.partials.discard(url);
+            }
+        }
+        extractChecksums(response.getValue(), task);
+        if (conditional) {
+            try (InputStream is = dataFile == null
+                ? new ByteArrayInputStream(task.getDataBytes()) : Files.newInputStream(dataFile.toPath())) {
+                this.validators.store(url, is, response.getValue());
+            }
         }
         if (task.getDataFile() != null) {
             final String lastModifiedHeader = response.getValue().get(HttpHeader.LAST_MODIFIED);
@@ -241,50 +1074,184 @@ final class HttpTransporter extends AbstractTransporter {
                 );
             }
         }
+        return response.getValue();
+    }
+
+    /**
+     * Writes response content into the file from the offset, reporting progress to the task listener.
+     * The file may be extended to the advertised length up-front, see {@link PreallocatedFile}.
+     */
+    private void download(GetTask task, ResponseContent content, Path file, long offset, long length)
+        throws IOException, TransferCancelledException {
+        try (ResponseContent body = content;
+            PreallocatedFile target = PreallocatedFile.open(file, offset, length, this.preallocate)) {
+            // resolver digests the reported bytes, its own file does not have the kept prefix of a resumed download
+            task.getListener().transportStarted(0L, length);
+            if (offset > 0L) {
+                replay(file, offset, task.getListener());
+            }
+            body.transferTo(target, offset, Long.MAX_VALUE, task.getListener());
+            if (length > offset && target.written() != length - offset) {
+                final String msg = String.format(
+                    "%s advertised %d bytes, %d received", task.getLocation(), length - offset, target.written()
+                );
+                if (target.written() < length - offset) {
+                    throw new IOException(msg);
+                }
+                LOGGER.debug(msg);
+            }
+        }
+    }
+
+    /**
+     * Reports the first bytes of the file as transferred.
+     */
+    private static void replay(Path file, long length, TransportListener listener)
+        throws IOException, TransferCancelledException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            for (long pos = 0L; pos < length; ) {
+                buffer.clear();
+                if (buffer.capacity() > length - pos) {
+                    buffer.limit((int) (length - pos));
+                }
+                final int read = channel.read(buffer, pos);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of partial download " + file);
+                }
+                pos += read;
+                buffer.flip();
+                listener.transportProgressed(buffer);
+            }
+        }
     }
 
     @Override
     protected void implPut(PutTask task) throws Exception {
-        try (final InputStream stream = task.newInputStream()) {
-            this.makeRequest(HttpMethod.PUT, task,
-                new InputStreamRequestContent(stream), this.chooseClient());
+        if (this.redundant(task)) {
+            return;
         }
+        final HttpFields headers = this.putHeaders(task);
+        final HttpClient client = this.chooseClient();
+        this.makeRequest(HttpMethod.PUT, task, this.putContent(task, client), client, headers).getKey().close();
+    }
+
+    /**
+     * Whether the upload is a checksum file already declared in headers of an upload, see {@link UploadChecksums}.
+     */
+    private boolean redundant(PutTask task) throws IOException {
+        final boolean res = this.uploadChecksums != null && this.uploadChecksums.redundant(this.url(task), task);
+        if (res) {
+            LOGGER.debug("Upload of {} skipped, checksum is declared in headers", task.getLocation());
+        }
+        return res;
+    }
+
+    /**
+     * Headers of the upload declaring its checksums, if enabled.
+     */
+    private HttpFields putHeaders(PutTask task) throws IOException {
+        return this.uploadChecksums == null ? HttpFields.EMPTY : this.uploadChecksums.headers(this.url(task), task);
+    }
+
+    /**
+     * Body of the upload, reporting its progress to the listener of the task which is notified of the start.
+     */
+    private Request.Content putContent(PutTask task, HttpClient client)
+        throws IOException, TransferCancelledException {
+        final Request.Content content;
+        final File file = task.getDataFile();
+        final long length = task.getDataLength();
+        if (file == null && length >= 0L && length <= BUFFERED_UPLOAD) {
+            // small enough to be kept for repeating the request over the other protocol
+            try (InputStream stream = task.newInputStream()) {
+                content = new BytesRequestContent(stream.readAllBytes());
+            }
+        } else if (file == null) {
+            // streamed as Jetty sends it, the request is not repeated then
+            content = new InputStreamRequestContent(
+                "application/octet-stream", task.newInputStream(), client.getByteBufferPool()
+            );
+        } else {
+            // read by Jetty straight into pooled direct buffers, sized and rewindable for repeated requests
+            final PathRequestContent path = new PathRequestContent(
+                "application/octet-stream", file.toPath(), client.getByteBufferPool()
+            );
+            path.setUseDirectByteBuffers(true);
+            content = path;
+        }
+        task.getListener().transportStarted(0L, length);
+        return new UploadContent(content, length, task.getListener());
     }
 
     @Override
     protected void implClose() {
+        this.sidecars.clear();
+        if (this.globalState == null) {
+            this.closeClients();
+        }
+        AuthenticationContext.close(repoAuthContext);
+        AuthenticationContext.close(proxyAuthContext);
+    }
+
+    private void closeClients() {
         try {
             if (this.http3Client != null) {
                 http3Client.stop();
                 http3Client.destroy();
             }
             if (this.httpClient != null) {
-                this.httpClient.stop();
-                this.httpClient.destroy();
+                GlobalState.stopClient(this.httpClient);
             }
         } catch (Exception e) {
             throw new UncheckedIOException(new IOException(e));
         }
-        AuthenticationContext.close(repoAuthContext);
-        AuthenticationContext.close(proxyAuthContext);
     }
 
-    private Pair<InputStream, HttpFields> makeRequest(
-        HttpMethod method, TransportTask task, Request.Content bodyContent, HttpClient client
+    private Pair<ResponseContent, HttpFields> makeRequest(
+        HttpMethod method, TransportTask task, Request.Content bodyContent, HttpClient client, HttpFields headers
     ) {
-        final String url = this.baseUri.resolve(task.getLocation()).toString();
-        if (this.authInfo != null) {
-            client.getAuthenticationStore().addAuthenticationResult(
-                new BasicAuthentication.BasicResult(this.baseUri, this.authInfo[0], this.authInfo[1])
-            );
+        return this.makeRequest(method, task, bodyContent, client, headers, false);
+    }
+
+    private Pair<ResponseContent, HttpFields> makeRequest(
+        HttpMethod method, TransportTask task, Request.Content bodyContent, HttpClient client, HttpFields headers,
+        boolean fallback
+    ) {
+        return this.complete(
+            this.send(method, task, bodyContent, client, headers), task, bodyContent, headers, fallback
+        );
+    }
+
+    /**
+     * Sends the request without waiting for the response, failures are thrown by
+     * {@link #complete(Exchange, TransportTask, Request.Content, HttpFields)}.
+     */
+    private Exchange send(
+        HttpMethod method, TransportTask task, Request.Content bodyContent, HttpClient client, HttpFields headers
+    ) {
+        final Exchange exchange = new Exchange(method, this.httpVersion(client), client);
+        if (method == HttpMethod.GET && this.minThroughput > 0L) {
+            exchange.content.watch(new ThroughputFloor(this.minThroughput, this.throughputPeriod));
+        }
+        final TokenBucket bucket = this.tokenBucket(task.getLocation());
+        Request.Content body = bodyContent;
+        if (bucket != null) {
+            exchange.content.shape(bucket.pacer(client.getScheduler()));
+            if (body != null) {
+                body = bucket.pace(body, client.getScheduler());
+            }
         }
-        Request request = null;
-        final HttpVersion version = this.httpVersion(client);
         try {
-            InputStreamResponseListener listener = new InputStreamResponseListener();
-            request = client.newRequest(url);
-            request.method(method).headers(
+            exchange.request = this.newRequest(client, this.baseUri.resolve(task.getLocation()).toString(), method);
+            exchange.request.headers(
                 httpFields -> {
+                httpFields.add(headers);
+                if (this.compression && method == HttpMethod.GET && compressible(task.getLocation())
+                    && !headers.contains(HttpHeader.ACCEPT_ENCODING)) {
+                    // Jetty decodes gzip content as it streams, so listeners and checksums see decoded bytes
+                    httpFields.add(HttpHeader.ACCEPT_ENCODING, "gzip");
+                }
                 if (bodyContent != null) {
                     httpFields.add(HttpHeader.CONTENT_TYPE, bodyContent.getContentType());
                     if (task instanceof PutTask) {
@@ -294,58 +1261,343 @@ final class HttpTransporter extends AbstractTransporter {
                         }
                     }
                 }
-            }).body(bodyContent).send(listener);
-            final Response response = listener.get(this.connectTimeout, TimeUnit.MILLISECONDS);
-            if (response.getStatus() >= 300) {
+            }).body(body).send(exchange.content);
+        } catch (final Exception ex) {
+            exchange.failure = ex;
+        }
+        return exchange;
+    }
+
+    /**
+     * Waits for the response headers of the sent request, repeating it over another protocol when the
+     * connection fails.
+     */
+    private Pair<ResponseContent, HttpFields> complete(
+        Exchange exchange, TransportTask task, Request.Content bodyContent, HttpFields headers
+    ) {
+        return this.complete(exchange, task, bodyContent, headers, false);
+    }
+
+    /**
+     * Waits for the response headers of the sent request, repeating it once over another protocol when the
+     * connection fails, unless it is the repeated request already.
+     */
+    private Pair<ResponseContent, HttpFields> complete(
+        Exchange exchange, TransportTask task, Request.Content bodyContent, HttpFields headers, boolean fallback
+    ) {
+        final String url = this.baseUri.resolve(task.getLocation()).toString();
+        final HttpMethod method = exchange.method;
+        final HttpVersion version = exchange.version;
+        try {
+            if (exchange.failure != null) {
+                throw exchange.failure;
+            }
+            final ResponseContent listener = exchange.content;
+            final Response response = this.awaitHeaders(exchange);
+            final HttpVersion negotiated = response.getVersion();
+            this.altSvc.update(this.origin, response.getHeaders().get(HttpHeader.ALT_SVC));
+            if (version == HttpVersion.HTTP_3) {
+                this.http3Failures.succeeded(this.origin);
+            } else {
+                // TCP race winner is known by the protocol negotiated over its connection
+                this.raceWinners.computeIfPresent(
+                    this.origin, (origin, winner) -> winner == HttpVersion.HTTP_3 ? winner : negotiated
+                );
+                this.probeHttp3();
+            }
+            if (response.getStatus() >= 300 && response.getStatus() != HttpStatus.NOT_MODIFIED_304) {
                 LOGGER.debug(
                     "{} request error status {}, method={}, url={}",
-                    version, response.getStatus(), method, url
+                    negotiated, response.getStatus(), method, url
                 );
+                listener.discard();
                 throw new HttpResponseException(Integer.toString(response.getStatus()), response);
             }
             LOGGER.debug(
-                "{} request done, method={}, resp status={}, url={}", version, method, response.getStatus(), url
+                "{} request done, method={}, resp status={}, url={}", negotiated, method, response.getStatus(), url
             );
-            return new ImmutablePair<>(listener.getInputStream(), response.getHeaders());
+            return new ImmutablePair<>(listener, response.getHeaders());
         } catch (Exception ex) {
             LOGGER.debug(
                 "{} request error={}: {}, method={}, url={}", version,
                 ex.getClass(), ex.getMessage(), method, url
             );
-            if (version == HttpVersion.HTTP_3 && ex instanceof TimeoutException) {
-                LOGGER.debug("Repeat via HTTP/1.1 method={}, url={}", method, url);
-                return this.makeRequest(method, task, bodyContent, this.initOrGetHttpClient());
+            if (!(ex instanceof HttpResponseException)) {
+                exchange.abort(ex);
+            }
+            final boolean quicTimeout = version == HttpVersion.HTTP_3 && ex instanceof TimeoutException;
+            final boolean tcpFailure = version != HttpVersion.HTTP_3 && this.quic && isConnectFailure(ex);
+            // a body already read is sent again only if it can be rewound
+            if (!fallback && (quicTimeout || tcpFailure) && (bodyContent == null || bodyContent.rewind())) {
+                if (quicTimeout) {
+                    LOGGER.debug("Repeat via {} method={}, url={}", this.tcpVersion, method, url);
+                    this.http3Failures.failed(this.origin);
+                    this.raceWinners.remove(this.origin, HttpVersion.HTTP_3);
+                    return this.makeRequest(method, task, bodyContent, this.initOrGetHttpClient(), headers, true);
+                }
+                // server may serve HTTP/3 only, without advertising it over TCP
+                LOGGER.debug("Repeat via HTTP/3 method={}, url={}", method, url);
+                return this.makeRequest(method, task, bodyContent, this.initOrGetHttp3Client(), headers, true);
+            }
+            throw new HttpRequestException(ex.getMessage(), exchange.request);
+        }
+    }
+
+    /**
+     * Probes HTTP/3 to the origin marked as broken in the background, once a request over TCP succeeded: the
+     * failure is forgotten as soon as a QUIC connection to the origin is established, instead of when it expires.
+     */
+    private void probeHttp3() {
+        if (this.quic && this.altSvc.supportsHttp3(this.origin) && this.http3Failures.probe(this.origin)) {
+            final HttpClient h3 = this.initOrGetHttp3Client();
+            h3.resolveDestination(h3.newRequest(this.baseUri.toString())).getConnectionPool()
+                .preCreateConnections(1)
+                .whenComplete(
+                    (ignored, err) -> {
+                        if (err == null) {
+                            this.http3Failures.succeeded(this.origin);
+                        } else {
+                            LOGGER.debug("HTTP/3 probe of {} failed: {}", this.origin, err.getMessage());
+                        }
+                    }
+                );
+        }
+    }
+
+    /**
+     * Bandwidth limit of the transfers of the resource.
+     * @param location Location of the resource
+     * @return Bucket, {@code null} if not limited
+     */
+    private TokenBucket tokenBucket(URI location) {
+        return TokenBucket.metadata(this.priorities.classify(this.baseUri.resolve(location).getPath()))
+            ? this.metadataBucket : this.artifactBucket;
+    }
+
+    /**
+     * Pacer of the content of responses of the resource, see {@link TokenBucket#pacer(Scheduler)}.
+     */
+    private ObjLongConsumer<Runnable> pacer(URI location, HttpClient client) {
+        final TokenBucket bucket = this.tokenBucket(location);
+        final ObjLongConsumer<Runnable> res;
+        if (bucket == null) {
+            res = (demand, bytes) -> demand.run();
+        } else {
+            res = bucket.pacer(client.getScheduler());
+        }
+        return res;
+    }
+
+    /**
+     * Bandwidth limit of the repository, shared by its transporters within the session.
+     * @return Bucket, {@code null} if not limited
+     */
+    private TokenBucket tokenBucket(
+        RepositorySystemSession session, String repository, boolean metadata, String property
+    ) {
+        final long rate = ConfigUtils.getLong(session, 0L, property + "." + repository, property);
+        TokenBucket res = null;
+        if (rate > 0L) {
+            res = this.globalState == null
+                ? new TokenBucket(rate) : this.globalState.getTokenBucket(repository, metadata, rate);
+        }
+        return res;
+    }
+
+    /**
+     * Waits for the response headers: up to the connect timeout while the connection is being established,
+     * then, once connected, up to the headers timeout for a server slow to respond.
+     * @param exchange Sent exchange
+     * @return Response
+     * @throws TimeoutException If not connected in time, or the server did not respond in time
+     */
+    private Response awaitHeaders(Exchange exchange)
+        throws InterruptedException, TimeoutException, ExecutionException {
+        try {
+            return exchange.content.get(this.connectTimeout, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException ex) {
+            if (this.headersTimeout <= this.connectTimeout || !exchange.connected()) {
+                throw ex;
             }
-            throw new HttpRequestException(ex.getMessage(), request);
+            LOGGER.debug("{} is slow to respond, waiting up to {} ms", this.origin, this.headersTimeout);
+            return exchange.content.get(this.headersTimeout - this.connectTimeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Creates request, not sent yet, with credentials of the repository.
+     */
+    private Request newRequest(HttpClient client, String url, HttpMethod method) {
+        // Jetty advertises gzip on every request by default, including already compressed jars
+        final Request request = client.newRequest(url).method(method)
+            .headers(fields -> fields.remove(HttpHeader.ACCEPT_ENCODING));
+        final String priority = method == HttpMethod.PUT ? null : this.priorities.priority(URI.create(url).getPath());
+        if (priority != null) {
+            // RFC 9218: metadata the resolution waits on is served before bulk artifacts on the same connection
+            request.headers(fields -> fields.put(PRIORITY, priority));
+        }
+        if (this.requestTimeout > 0) {
+            // bodies stalled for longer are aborted, see ThroughputFloor for bodies trickling slowly
+            request.idleTimeout(this.requestTimeout, TimeUnit.MILLISECONDS);
+        }
+        if (this.authInfo != null) {
+            // Clients may be shared between repositories, so credentials go to the request, not to the client
+            new BasicAuthentication.BasicResult(this.baseUri, this.authInfo[0], this.authInfo[1]).apply(request);
         }
+        return request;
     }
 
     private void extractChecksums(HttpFields response, GetTask task) {
+        final Map<String, String> checksums = this.declaredChecksums(response);
+        if (checksums != null) {
+            checksums.forEach(task::setChecksum);
+        }
+    }
+
+    /**
+     * Checksums declared in response headers, by the first extractor recognizing them.
+     * @return Checksums by algorithm, {@code null} if there are none
+     */
+    private Map<String, String> declaredChecksums(HttpFields response) {
         for (Map.Entry<String, ChecksumExtractor> extractorEntry : checksumExtractors.entrySet()) {
             Map<String, String> checksums = extractorEntry.getValue().extractChecksums(response);
             if (checksums != null) {
-                checksums.forEach(task::setChecksum);
-                return;
+                return checksums;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares checksums computed during download with the ones declared by the server. A mismatch is only logged:
+     * the declared checksums are passed to the resolver, which rejects or accepts the file by its checksum policy.
+     * @return Computed checksums, empty if not computed or not matching the declared ones
+     */
+    private Map<String, String> verifyChecksums(
+        GetTask task, DigestingListener digests, HttpFields response
+    ) {
+        Map<String, String> res = Collections.emptyMap();
+        if (digests != null) {
+            res = digests.checksums();
+            final String mismatch = DigestingListener.mismatch(res, this.declaredChecksums(response));
+            if (mismatch != null) {
+                LOGGER.warn("{}: {}", task.getLocation(), mismatch);
+                res = Collections.emptyMap();
             }
         }
+        return res;
     }
 
     /**
-     * Choose http client to initialize and perform request with: if host is present in known
-     * central's hosts {@link HttpTransporter#CENTRAL}, http 1.1 client is used, otherwise we use http3 client.
+     * Choose http client to initialize and perform request with: the protocol which won the connection race
+     * to the origin, if any; TCP (http2 or http 1.1) client if HTTP/3 to the origin recently failed (see
+     * {@link Http3FailureCache}); http3 client if origin advertised HTTP/3 support via {@code Alt-Svc} header
+     * (see {@link AltSvcCache}), otherwise we use TCP client.
      */
     private HttpClient chooseClient() {
+        final HttpVersion winner = this.raceWinners.get(this.origin);
         final HttpClient res;
-        if (CENTRAL.contains(this.baseUri.getHost())) {
+        if (winner == HttpVersion.HTTP_3 && this.quic) {
+            res = this.initOrGetHttp3Client();
+        } else if (winner != null || !this.quic) {
+            res = this.initOrGetHttpClient();
+        } else if (this.http3Failures.isBroken(this.origin)) {
             res = Optional.ofNullable(this.httpClient).orElseGet(this::initOrGetHttpClient);
+        } else if (this.altSvc.supportsHttp3(this.origin)) {
+            if (this.racing) {
+                res = this.raceClients();
+            } else {
+                res = Optional.ofNullable(this.http3Client).orElseGet(this::initOrGetHttp3Client);
+            }
         } else {
-            res = Optional.ofNullable(this.http3Client).orElseGet(this::initOrGetHttp3Client);
+            res = Optional.ofNullable(this.httpClient).orElseGet(this::initOrGetHttpClient);
         }
         return res;
     }
 
+    /**
+     * Races QUIC and TCP connection establishment to the origin in RFC 8305 (happy eyeballs) style:
+     * QUIC connection is started first and TCP one after {@link #racingDelay} unless QUIC already succeeded.
+     * Connections are created in pools of the clients, so the request is then sent over the established one.
+     * The protocol of the first established connection is remembered for the origin, a TCP one is updated to
+     * the version negotiated over the connection once the first response arrives.
+     * @return Client of the winning protocol
+     */
+    private HttpClient raceClients() {
+        final String url = this.baseUri.toString();
+        final HttpClient h3 = this.initOrGetHttp3Client();
+        final ConnectionPool quicPool = h3.resolveDestination(h3.newRequest(url)).getConnectionPool();
+        if (!quicPool.isEmpty()) {
+            return h3;
+        }
+        final CompletableFuture<Void> quic = quicPool.preCreateConnections(1);
+        HttpClient winner;
+        try {
+            quic.get(this.racingDelay, TimeUnit.MILLISECONDS);
+            winner = h3;
+        } catch (final TimeoutException | ExecutionException ex) {
+            final HttpClient tcp = this.initOrGetHttpClient();
+            final CompletableFuture<Void> tls = tcp.resolveDestination(tcp.newRequest(url))
+                .getConnectionPool().preCreateConnections(1);
+            quic.whenComplete(
+                (ignored, err) -> {
+                    if (err != null) {
+                        this.http3Failures.failed(this.origin);
+                    }
+                }
+            );
+            final CompletableFuture<HttpClient> first = new CompletableFuture<>();
+            quic.thenRun(() -> first.complete(h3));
+            tls.thenRun(() -> first.complete(tcp));
+            CompletableFuture.allOf(quic, tls).whenComplete(
+                (ignored, err) -> {
+                    if (err != null) {
+                        first.completeExceptionally(err);
+                    }
+                }
+            );
+            try {
+                winner = first.get(this.connectTimeout, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException | ExecutionException err) {
+                LOGGER.debug("No connection won the race to {}: {}", this.origin, err.getMessage());
+                return h3;
+            } catch (final InterruptedException err) {
+                Thread.currentThread().interrupt();
+                return h3;
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return h3;
+        }
+        final HttpVersion version = this.httpVersion(winner);
+        LOGGER.debug("{} won the connection race to {}", winner == h3 ? version : "TCP", this.origin);
+        this.raceWinners.put(this.origin, version);
+        return winner;
+    }
+
+    private static boolean compressible(final URI location) {
+        final String path = location.getPath();
+        boolean res = false;
+        for (int idx = 0; path != null && idx < COMPRESSIBLE.length && !res; ++idx) {
+            res = path.endsWith(COMPRESSIBLE[idx]);
+        }
+        return res;
+    }
+
+    private static boolean isConnectFailure(final Throwable error) {
+        boolean res = false;
+        for (Throwable cause = error; cause != null && !res; cause = cause.getCause()) {
+            res = cause instanceof ConnectException;
+        }
+        return res;
+    }
+
+    /**
+     * Protocol version the client is configured with: the one of TCP connection may be downgraded to
+     * HTTP/1.1 by ALPN negotiation, which is reported by {@link Response#getVersion()}.
+     */
     private HttpVersion httpVersion(final HttpClient client) {
-        return client.getTransport() instanceof HttpClientTransportOverHTTP3 ? HttpVersion.HTTP_3 : HttpVersion.HTTP_1_1;
+        return client.getTransport() instanceof HttpClientTransportOverHTTP3 ? HttpVersion.HTTP_3 : this.tcpVersion;
     }
 
     /**
@@ -399,4 +1651,158 @@ final class HttpTransporter extends AbstractTransporter {
             LOGGER.debug("Custom HttpTransporter PreEncodedHttpField v={}; len={}", v, len);
         }
     }
+
+    /**
+     * Tasks of {@link #getAll(Collection)} completed asynchronously: a window of requests is in flight, the
+     * response listener of each request hands the task over to the executor once the headers arrive, and the
+     * completed task sends the next request.
+     */
+    private final class Batch {
+
+        private final List<GetTask> tasks;
+
+        private final Map<GetTask, Exception> failures = Collections.synchronizedMap(new IdentityHashMap<>());
+
+        /**
+         * Index of the next task to send.
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * Number of tasks not completed yet.
+         */
+        private final AtomicInteger pending;
+
+        private final CompletableFuture<Map<GetTask, Exception>> done = new CompletableFuture<>();
+
+        private final Executor executor;
+
+        Batch(Collection<GetTask> tasks) {
+            this.tasks = new ArrayList<>(tasks);
+            this.pending = new AtomicInteger(this.tasks.size());
+            this.executor = HttpTransporter.this.executor();
+        }
+
+        /**
+         * Sends the first window of requests on the executor.
+         * @return Completed with the failures by task once all tasks are over
+         */
+        CompletableFuture<Map<GetTask, Exception>> start() {
+            if (this.tasks.isEmpty()) {
+                this.done.complete(this.failures);
+            }
+            for (int idx = 0; idx < Math.min(this.tasks.size(), Math.max(1, batchWindow)); ++idx) {
+                this.executor.execute(this::send);
+            }
+            return this.done;
+        }
+
+        /**
+         * Sends no more requests and aborts the ones in flight.
+         */
+        void cancel() {
+            final int size = this.tasks.size();
+            final int skipped = size - Math.min(size, this.next.getAndSet(size));
+            if (skipped > 0 && this.pending.addAndGet(-skipped) == 0) {
+                this.done.complete(this.failures);
+            }
+            for (final GetTask task : this.tasks) {
+                final Exchange exchange = presented.remove(task);
+                if (exchange != null) {
+                    exchange.abort(new IOException("Batch is cancelled"));
+                }
+            }
+        }
+
+        private void send() {
+            final int idx = this.next.getAndIncrement();
+            if (idx >= this.tasks.size()) {
+                return;
+            }
+            final GetTask task = this.tasks.get(idx);
+            CompletionStage<?> ready = CompletableFuture.completedFuture(null);
+            if (pipelined(task)) {
+                final Exchange exchange = HttpTransporter.this.send(
+                    HttpMethod.GET, task, null, chooseClient(), HttpFields.EMPTY
+                );
+                presented.put(task, exchange);
+                if (exchange.failure == null) {
+                    ready = exchange.content.received();
+                }
+            }
+            ready.whenComplete((ignored, err) -> this.executor.execute(() -> this.complete(task)));
+        }
+
+        private void complete(GetTask task) {
+            try {
+                HttpTransporter.this.get(task);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                this.failures.put(task, ex);
+            } catch (final Exception ex) {
+                this.failures.put(task, ex);
+            } finally {
+                final Exchange exchange = presented.remove(task);
+                if (exchange != null) {
+                    exchange.abort(new IOException("Batch is over"));
+                }
+                this.send();
+                if (this.pending.decrementAndGet() == 0) {
+                    this.done.complete(this.failures);
+                }
+            }
+        }
+    }
+
+    /**
+     * Request sent with the listener of its response.
+     */
+    private static final class Exchange {
+
+        private final HttpMethod method;
+
+        /**
+         * Protocol version of the client the request is sent with, see {@link HttpTransporter#httpVersion(HttpClient)}.
+         */
+        private final HttpVersion version;
+
+        private final HttpClient client;
+
+        private final ResponseContent content = new ResponseContent();
+
+        private Request request;
+
+        private Exception failure;
+
+        Exchange(HttpMethod method, HttpVersion version, HttpClient client) {
+            this.method = method;
+            this.version = version;
+            this.client = client;
+        }
+
+        /**
+         * Whether a connection to the destination of the request is established, so that the server is slow
+         * to respond rather than unreachable.
+         * @return True if connected
+         */
+        boolean connected() {
+            boolean res = false;
+            if (this.request != null) {
+                final ConnectionPool pool = this.client.resolveDestination(this.request).getConnectionPool();
+                res = pool instanceof AbstractConnectionPool && ((AbstractConnectionPool) pool).getConnectionCount()
+                    > ((AbstractConnectionPool) pool).getPendingConnectionCount();
+            }
+            return res;
+        }
+
+        /**
+         * Aborts the request, if it was sent.
+         * @param cause Cause
+         */
+        void abort(Throwable cause) {
+            if (this.request != null) {
+                this.request.abort(cause);
+            }
+        }
+    }
 }
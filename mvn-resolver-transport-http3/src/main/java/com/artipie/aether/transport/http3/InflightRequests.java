@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http.HttpFields;
+
+/**
+ * Session-wide single-flight registry of GET and HEAD requests: the first transporter requesting a URL (the
+ * leader) performs the request, the ones requesting the same URL meanwhile (the followers) wait for its outcome
+ * instead of going to the network.
+ * <p>
+ * A downloaded file is shared through a hard link (or a copy where links are not supported) in a private
+ * directory under the local repository, never next to the file in the repository itself, as the resolver moves
+ * the file of the leader away as soon as the leader returns. The link is deleted once the last follower has
+ * read it.
+ * <p>
+ * Prefetched downloads are parked: their flight stays registered after the download until the first request of
+ * the URL claims it, or until it is {@link #unpark(Object...) unparked}.
+ */
+final class InflightRequests {
+
+    /**
+     * Whether concurrent GET and HEAD requests of the same URL share one network request.
+     */
+    static final String CONFIG_PROP_COALESCE = "aether.connector.http3.coalesce";
+
+    /**
+     * Directory of shared files in the state directory of the local repository.
+     */
+    static final String DIR_NAME = "shared";
+
+    private final ConcurrentMap<GlobalState.CompoundKey, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Directory of the links to shared files.
+     */
+    private final Path dir;
+
+    /**
+     * Ctor.
+     * @param dir Directory of the links to shared files, {@code null} to use the temporary directory
+     */
+    InflightRequests(Path dir) {
+        this.dir = dir == null ? Path.of(System.getProperty("java.io.tmpdir")) : dir;
+    }
+
+    /**
+     * Joins the flight of the request, starting a new one if there is none.
+     * @param keys Request key, such as method, repository and URL
+     * @return Flight, led by the caller if {@link Flight#leader()}
+     */
+    Flight join(Object... keys) {
+        final GlobalState.CompoundKey key = new GlobalState.CompoundKey(keys);
+        final Flight[] res = new Flight[1];
+        this.flights.compute(
+            key,
+            (ignored, flight) -> {
+                final Flight next;
+                if (flight == null) {
+                    res[0] = new Flight(this, key);
+                    next = res[0];
+                } else if (flight.parked) {
+                    // reader of the parked download was accounted when it was parked
+                    res[0] = flight.follower();
+                    next = null;
+                } else {
+                    flight.followers.incrementAndGet();
+                    res[0] = flight.follower();
+                    next = flight;
+                }
+                return next;
+            }
+        );
+        return res[0];
+    }
+
+    /**
+     * Starts a new flight of the request unless one is registered already.
+     * @param keys Request key, see {@link #join(Object...)}
+     * @return Flight led by the caller, {@code null} if there is a flight
+     */
+    Flight lead(Object... keys) {
+        final GlobalState.CompoundKey key = new GlobalState.CompoundKey(keys);
+        final Flight res = new Flight(this, key);
+        final Flight registered = this.flights.putIfAbsent(key, res);
+        return registered == null ? res : null;
+    }
+
+    /**
+     * Drops the parked download of the request unless it was claimed.
+     * @param keys Request key, see {@link #join(Object...)}
+     */
+    void unpark(Object... keys) {
+        final Flight[] res = new Flight[1];
+        this.flights.computeIfPresent(
+            new GlobalState.CompoundKey(keys),
+            (ignored, flight) -> {
+                if (flight.parked) {
+                    res[0] = flight;
+                }
+                return flight.parked ? null : flight;
+            }
+        );
+        if (res[0] != null) {
+            try {
+                final Shared shared = res[0].await();
+                if (shared != null) {
+                    shared.release();
+                }
+            } catch (final Exception ex) {
+                HttpTransporter.LOGGER.debug("Parked download {} failed: {}", res[0].key, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Request shared by its leader and followers.
+     */
+    static final class Flight {
+
+        private final InflightRequests owner;
+
+        private final GlobalState.CompoundKey key;
+
+        private final boolean leader;
+
+        private final CompletableFuture<Shared> result;
+
+        private final AtomicInteger followers;
+
+        /**
+         * Whether the flight stays registered for the next request after it is over, guarded by the map.
+         */
+        private boolean parked;
+
+        private Flight(InflightRequests owner, GlobalState.CompoundKey key) {
+            this(owner, key, true, new CompletableFuture<>(), new AtomicInteger());
+        }
+
+        private Flight(
+            InflightRequests owner, GlobalState.CompoundKey key, boolean leader,
+            CompletableFuture<Shared> result, AtomicInteger followers
+        ) {
+            this.owner = owner;
+            this.key = key;
+            this.leader = leader;
+            this.result = result;
+            this.followers = followers;
+        }
+
+        /**
+         * Whether the caller performs the request.
+         * @return True for the leader
+         */
+        boolean leader() {
+            return this.leader;
+        }
+
+        /**
+         * Whether the outcome of the leader is published, or the flight failed.
+         * @return True if settled
+         */
+        boolean settled() {
+            return this.result.isDone();
+        }
+
+        /**
+         * Publishes the outcome of the leader to the followers, the flight is over then and the next request
+         * of the URL starts a new one.
+         * @param file Downloaded file, {@code null} if not downloaded into a file
+         * @param data Downloaded data, {@code null} if downloaded into a file or nothing was downloaded
+         * @param headers Response headers
+         */
+        void complete(Path file, byte[] data, HttpFields headers) {
+            this.owner.flights.remove(this.key, this);
+            this.publish(file, data, headers, this.followers.get());
+        }
+
+        /**
+         * Publishes the outcome of the leader to the followers and keeps it for the next request of the URL,
+         * see {@link InflightRequests#unpark(Object...)}.
+         * @param file Downloaded file, {@code null} if not downloaded into a file
+         * @param data Downloaded data, {@code null} if downloaded into a file
+         * @param headers Response headers
+         */
+        void park(Path file, byte[] data, HttpFields headers) {
+            final int[] count = new int[1];
+            this.owner.flights.compute(
+                this.key,
+                (ignored, flight) -> {
+                    this.parked = true;
+                    count[0] = this.followers.get() + 1;
+                    return this;
+                }
+            );
+            this.publish(file, data, headers, count[0]);
+        }
+
+        private void publish(Path file, byte[] data, HttpFields headers, int count) {
+            if (count == 0) {
+                this.result.complete(null);
+                return;
+            }
+            Path link = null;
+            if (file != null) {
+                link = this.owner.dir.resolve(String.format("%s.%s.shared", file.getFileName(), UUID.randomUUID()));
+                try {
+                    Files.createDirectories(this.owner.dir);
+                    share(file, link);
+                } catch (final IOException ex) {
+                    // followers request the file on their own then
+                    this.result.completeExceptionally(ex);
+                    return;
+                }
+            }
+            this.result.complete(new Shared(link, data, headers, count));
+        }
+
+        /**
+         * Fails the flight, followers get the failure.
+         * @param failure Failure of the leader
+         */
+        void fail(Throwable failure) {
+            this.owner.flights.remove(this.key, this);
+            this.result.completeExceptionally(failure);
+        }
+
+        /**
+         * Waits for the outcome of the leader.
+         * @return Shared outcome, the caller must {@link Shared#release()} it
+         * @throws Exception Failure of the leader
+         */
+        Shared await() throws Exception {
+            try {
+                return this.result.get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw ex;
+            } catch (final ExecutionException ex) {
+                if (ex.getCause() instanceof Exception) {
+                    throw (Exception) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+
+        private static void share(Path file, Path link) throws IOException {
+            try {
+                Files.createLink(link, file);
+            } catch (final IOException | UnsupportedOperationException ex) {
+                Files.copy(file, link);
+            }
+        }
+
+        private Flight follower() {
+            return new Flight(this.owner, this.key, false, this.result, this.followers);
+        }
+    }
+
+    /**
+     * Outcome of the leader read by the followers.
+     */
+    static final class Shared {
+
+        private final Path file;
+
+        private final byte[] data;
+
+        private final HttpFields headers;
+
+        private final AtomicInteger readers;
+
+        private Shared(Path file, byte[] data, HttpFields headers, int readers) {
+            this.file = file;
+            this.data = data;
+            this.headers = headers;
+            this.readers = new AtomicInteger(readers);
+        }
+
+        /**
+         * Response headers.
+         * @return Headers
+         */
+        HttpFields headers() {
+            return this.headers;
+        }
+
+        /**
+         * Shared file.
+         * @return File, {@code null} if the content is in memory
+         */
+        Path file() {
+            return this.file;
+        }
+
+        /**
+         * Length of the downloaded content.
+         * @return Length
+         * @throws IOException On error
+         */
+        long length() throws IOException {
+            final long res;
+            if (this.file != null) {
+                res = Files.size(this.file);
+            } else if (this.data != null) {
+                res = this.data.length;
+            } else {
+                res = 0L;
+            }
+            return res;
+        }
+
+        /**
+         * Opens the downloaded content.
+         * @return Input stream
+         * @throws IOException On error
+         */
+        InputStream open() throws IOException {
+            final InputStream res;
+            if (this.file != null) {
+                res = Files.newInputStream(this.file);
+            } else {
+                res = new ByteArrayInputStream(this.data == null ? new byte[0] : this.data);
+            }
+            return res;
+        }
+
+        /**
+         * Marks the outcome as read by one follower, the last one deletes the shared file.
+         */
+        void release() {
+            if (this.readers.decrementAndGet() == 0 && this.file != null) {
+                try {
+                    Files.deleteIfExists(this.file);
+                } catch (final IOException ex) {
+                    HttpTransporter.LOGGER.debug("Failed to delete shared {}: {}", this.file, ex.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.util.ConfigUtils;
+import org.eclipse.aether.util.FileUtils;
+
+/**
+ * Origins with expiration times, optionally persisted to a properties file under the local repository
+ * so that the knowledge about servers survives across builds.
+ */
+final class OriginExpirations {
+
+    /**
+     * Directory of the local repository with files persisted by this transport.
+     */
+    static final String STATE_DIR = ".http3";
+
+    /**
+     * Origin to the expiration time millis.
+     */
+    private final ConcurrentMap<String, Long> entries;
+
+    private final Path file;
+
+    private final String comment;
+
+    /**
+     * Ctor.
+     * @param file File to persist entries to, {@code null} to keep them in memory only
+     * @param comment Comment of the persisted file
+     */
+    OriginExpirations(Path file, String comment) {
+        this.file = file;
+        this.comment = comment;
+        this.entries = new ConcurrentHashMap<>();
+        this.load();
+    }
+
+    /**
+     * Resolves file with transport state under the local repository of the session.
+     * @param session Session
+     * @param prop Boolean config property enabling the persistence
+     * @param name File name
+     * @return Path or {@code null} if persistence is disabled or there is no local repository
+     */
+    static Path stateFile(RepositorySystemSession session, String prop, String name) {
+        final LocalRepository local = session.getLocalRepository();
+        Path res = null;
+        if (ConfigUtils.getBoolean(session, true, prop) && local != null && local.getBasedir() != null) {
+            res = local.getBasedir().toPath().resolve(STATE_DIR).resolve(name);
+        }
+        return res;
+    }
+
+    /**
+     * Origin key of the URI: scheme, host and port.
+     * @param uri URI
+     * @return Origin
+     */
+    static String origin(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return String.format("%s://%s:%d", uri.getScheme().toLowerCase(), uri.getHost(), port);
+    }
+
+    /**
+     * Whether origin has non-expired entry.
+     * @param origin Origin
+     * @return True if present and not expired
+     */
+    boolean contains(String origin) {
+        final Long expires = this.entries.get(origin);
+        return expires != null && expires > System.currentTimeMillis();
+    }
+
+    /**
+     * Puts the entry, without saving.
+     * @param origin Origin
+     * @param expires Expiration time millis
+     * @return Previous expiration time or {@code null}
+     */
+    Long put(String origin, long expires) {
+        return this.entries.put(origin, expires);
+    }
+
+    /**
+     * Removes the entry, without saving.
+     * @param origin Origin
+     * @return True if entry was present
+     */
+    boolean remove(String origin) {
+        return this.entries.remove(origin) != null;
+    }
+
+    /**
+     * Saves non-expired entries to the file, if any.
+     */
+    synchronized void save() {
+        if (this.file == null) {
+            return;
+        }
+        final Properties props = new Properties();
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<String, Long> entry : this.entries.entrySet()) {
+            if (entry.getValue() > now) {
+                props.setProperty(entry.getKey(), Long.toString(entry.getValue()));
+            }
+        }
+        try {
+            Files.createDirectories(this.file.getParent());
+            try (FileUtils.CollocatedTempFile tmp = FileUtils.newTempFile(this.file)) {
+                try (OutputStream output = Files.newOutputStream(tmp.getPath())) {
+                    props.store(output, this.comment);
+                }
+                tmp.move();
+            }
+        } catch (final IOException ex) {
+            HttpTransporter.LOGGER.debug("Failed to save {}: {}", this.file, ex.getMessage());
+        }
+    }
+
+    private void load() {
+        if (this.file == null || !Files.isRegularFile(this.file)) {
+            return;
+        }
+        final Properties props = new Properties();
+        try (InputStream input = Files.newInputStream(this.file)) {
+            props.load(input);
+        } catch (final IOException ex) {
+            HttpTransporter.LOGGER.debug("Failed to load {}: {}", this.file, ex.getMessage());
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        for (final String origin : props.stringPropertyNames()) {
+            try {
+                final long expires = Long.parseLong(props.getProperty(origin));
+                if (expires > now) {
+                    this.entries.put(origin, expires);
+                }
+            } catch (final NumberFormatException ignored) {
+                // skip broken entry
+            }
+        }
+    }
+}
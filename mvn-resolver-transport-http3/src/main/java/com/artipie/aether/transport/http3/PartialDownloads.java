@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.aether.util.ChecksumUtils;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+
+/**
+ * Store of interrupted downloads kept under the local repository, keyed by URL, so that they can be resumed
+ * with {@code Range} and {@code If-Range} request headers. Each partial download is a pair of files: the data
+ * received so far and the validator ({@code ETag} or {@code Last-Modified}) of the response it came from.
+ */
+final class PartialDownloads {
+
+    /**
+     * Whether interrupted downloads are kept and resumed.
+     */
+    static final String CONFIG_PROP_RESUME = "aether.connector.http3.resume";
+
+    static final String DIR_NAME = "partial";
+
+    private static final Pattern CONTENT_RANGE_PATTERN =
+        Pattern.compile("\\s*bytes\\s+([0-9]+)\\s*-\\s*([0-9]+)\\s*/\\s*([0-9]+)\\s*");
+
+    private final Path dir;
+
+    /**
+     * Ctor.
+     * @param dir Directory to keep partial downloads in, {@code null} disables resuming
+     */
+    PartialDownloads(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Validator of the response which can be used in {@code If-Range} header.
+     * @param headers Response headers
+     * @return Strong ETag or Last-Modified, {@code null} if there is none
+     */
+    static String validator(HttpFields headers) {
+        String res = headers.get(HttpHeader.ETAG);
+        if (res == null || res.startsWith("W/")) {
+            res = headers.get(HttpHeader.LAST_MODIFIED);
+        }
+        return res;
+    }
+
+    /**
+     * Offset of the partial content response, validated against the requested one: the range must start at the
+     * requested offset and end with the last byte of the resource of the expected length.
+     * @param headers Response headers
+     * @param requested Requested offset, {@code 0} if range was not requested
+     * @param expected Length of the whole resource, as recorded with the partial download, {@code -1} if unknown
+     * @return Offset of the response body, {@code 0} for full content
+     * @throws IOException If content range is invalid
+     */
+    static long offset(HttpFields headers, long requested, long expected) throws IOException {
+        final String range = headers.get(HttpHeader.CONTENT_RANGE);
+        long offset = 0L;
+        if (range != null) {
+            final long[] bounds = contentRange(range);
+            offset = bounds[0];
+            if (bounds[1] != bounds[2] - 1L || offset != requested || expected >= 0L && bounds[2] != expected) {
+                throw new IOException(
+                    String.format(
+                        "Invalid Content-Range header for partial download from offset %d of %d bytes: %s",
+                        requested, expected, range
+                    )
+                );
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Whether the partial content response is exactly the requested range of the resource.
+     * @param headers Response headers
+     * @param from First requested byte
+     * @param to Last requested byte
+     * @param total Length of the resource
+     * @return True if the range matches
+     * @throws IOException If content range is invalid
+     */
+    static boolean matches(HttpFields headers, long from, long to, long total) throws IOException {
+        final String range = headers.get(HttpHeader.CONTENT_RANGE);
+        if (range == null) {
+            return false;
+        }
+        final long[] bounds = contentRange(range);
+        return bounds[0] == from && bounds[1] == to && bounds[2] == total;
+    }
+
+    /**
+     * Parses the {@code Content-Range} header.
+     * @return First byte, last byte and total length
+     */
+    private static long[] contentRange(String range) throws IOException {
+        final Matcher matcher = CONTENT_RANGE_PATTERN.matcher(range);
+        if (!matcher.matches()) {
+            throw new IOException("Invalid Content-Range header for partial download: " + range);
+        }
+        final long[] res = {
+            Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), Long.parseLong(matcher.group(3)),
+        };
+        if (res[0] > res[1] || res[1] >= res[2]) {
+            throw new IOException("Invalid Content-Range header for partial download: " + range);
+        }
+        return res;
+    }
+
+    /**
+     * Data file of the partial download of the URL.
+     * @param url URL
+     * @return Path, {@code null} if there is no partial download
+     */
+    Path data(String url) {
+        Path res = null;
+        if (this.dir != null) {
+            final Path data = this.dir.resolve(key(url));
+            if (Files.isRegularFile(data) && Files.isRegularFile(validatorFile(data))) {
+                res = data;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Validator of the partial download of the URL.
+     * @param data Data file, see {@link #data(String)}
+     * @return Validator
+     * @throws IOException On error
+     */
+    String validator(Path data) throws IOException {
+        return Files.readAllLines(validatorFile(data), StandardCharsets.UTF_8).get(0).trim();
+    }
+
+    /**
+     * Length of the whole resource of the partial download of the URL.
+     * @param data Data file, see {@link #data(String)}
+     * @return Length, {@code -1} if it was not recorded
+     * @throws IOException On error
+     */
+    long length(Path data) throws IOException {
+        final List<String> lines = Files.readAllLines(validatorFile(data), StandardCharsets.UTF_8);
+        long res = -1L;
+        if (lines.size() > 1) {
+            try {
+                res = Long.parseLong(lines.get(1).trim());
+            } catch (final NumberFormatException ex) {
+                res = -1L;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Keeps interrupted download, unless it is empty, the response had no validator or its length is not known.
+     * @param url URL
+     * @param temp File with received data, moved into the store
+     * @param validator Response validator, see {@link #validator(HttpFields)}
+     * @param length Length of the whole resource
+     */
+    void keep(String url, Path temp, String validator, long length) {
+        if (this.dir == null || validator == null || length <= 0L) {
+            return;
+        }
+        final Path data = this.dir.resolve(key(url));
+        try {
+            if (Files.isRegularFile(temp) && Files.size(temp) > 0L) {
+                Files.createDirectories(this.dir);
+                Files.writeString(
+                    validatorFile(data), String.format("%s%n%d", validator, length), StandardCharsets.UTF_8
+                );
+                Files.move(temp, data, StandardCopyOption.REPLACE_EXISTING);
+                HttpTransporter.LOGGER.debug("Kept {} bytes of interrupted {}", Files.size(data), url);
+            }
+        } catch (final IOException ex) {
+            HttpTransporter.LOGGER.debug("Failed to keep partial download of {}: {}", url, ex.getMessage());
+        }
+    }
+
+    /**
+     * Removes partial download of the URL, if any.
+     * @param url URL
+     */
+    void discard(String url) {
+        if (this.dir == null) {
+            return;
+        }
+        final Path data = this.dir.resolve(key(url));
+        try {
+            Files.deleteIfExists(data);
+            Files.deleteIfExists(validatorFile(data));
+        } catch (final IOException ex) {
+            HttpTransporter.LOGGER.debug("Failed to remove partial download of {}: {}", url, ex.getMessage());
+        }
+    }
+
+    private static Path validatorFile(Path data) {
+        return data.resolveSibling(data.getFileName() + ".validator");
+    }
+
+    /**
+     * File name of the state kept for the URL.
+     * @param url URL
+     * @return Hex encoded SHA-1 of the URL
+     */
+    static String key(String url) {
+        try {
+            return ChecksumUtils.toHexString(
+                MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8))
+            );
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
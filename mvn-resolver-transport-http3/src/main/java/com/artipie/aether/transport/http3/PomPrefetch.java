@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.jetty.client.BufferingResponseListener;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.Result;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+
+/**
+ * Session-wide speculative prefetch of POMs: downloaded POMs are parsed for the parent, imported BOMs and
+ * dependencies with literal versions, and their POMs are requested concurrently in advance, before the resolver
+ * parses the POM and asks for them one by one. Prefetched POMs (and the POMs they reference, in turn) are kept
+ * in memory as parked downloads of {@link InflightRequests}, which later requests read instead of going to the
+ * network.
+ * <p>
+ * Unclaimed POMs are kept up to {@link #CONFIG_PROP_MAX_BYTES} per session and for at most {@link #PARK_TTL}
+ * milliseconds, older ones are unparked first; at most {@link #MAX_IN_FLIGHT} requests are in flight, and
+ * prefetched POMs are parsed on the executor of the client rather than on network threads. The statistics are
+ * logged when the session ends.
+ */
+final class PomPrefetch {
+
+    /**
+     * Whether POMs referenced by downloaded POMs are prefetched.
+     */
+    static final String CONFIG_PROP_PREFETCH = "aether.connector.http3.prefetch";
+
+    /**
+     * Max number of bytes of unclaimed prefetched POMs kept in memory per session.
+     */
+    static final String CONFIG_PROP_MAX_BYTES = "aether.connector.http3.prefetch.maxBytes";
+
+    static final long DEFAULT_MAX_BYTES = 32L * 1024L * 1024L;
+
+    /**
+     * Time in milliseconds an unclaimed POM is kept for.
+     */
+    static final long PARK_TTL = 60_000L;
+
+    private static final int MAX_IN_FLIGHT = 32;
+
+    private static final int MAX_POM_LENGTH = 1024 * 1024;
+
+    private static final String POM = ".pom";
+
+    private static final XMLInputFactory XML = newXmlFactory();
+
+    /**
+     * Elements with coordinates of referenced POMs.
+     */
+    private static final Set<String> OWNERS = new HashSet<>(
+        Arrays.asList(
+            "project/parent", "project/dependencies/dependency",
+            "project/dependencyManagement/dependencies/dependency"
+        )
+    );
+
+    private static final Set<String> FIELDS = new HashSet<>(
+        Arrays.asList("groupId", "artifactId", "version", "scope", "type", "optional")
+    );
+
+    private final InflightRequests inflight;
+
+    private final long maxBytes;
+
+    /**
+     * URLs requested so far, each POM is prefetched once per session.
+     */
+    private final Set<String> requested = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Unclaimed prefetched POMs by URL, oldest first, guarded by itself.
+     */
+    private final Map<String, Parked> parked = new LinkedHashMap<>();
+
+    /**
+     * Bytes of the unclaimed prefetched POMs.
+     */
+    private final AtomicLong live = new AtomicLong();
+
+    private final AtomicInteger prefetched = new AtomicInteger();
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    /**
+     * Ctor.
+     * @param inflight In-flight requests of the session
+     * @param maxBytes Max number of bytes to prefetch
+     */
+    PomPrefetch(InflightRequests inflight, long maxBytes) {
+        this.inflight = inflight;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Whether the resource is a POM.
+     * @param location Location of the resource
+     * @return True for POMs
+     */
+    static boolean applicable(URI location) {
+        final String path = location.getPath();
+        return path != null && path.endsWith(POM);
+    }
+
+    /**
+     * Prefetches POMs referenced by the downloaded POM.
+     * @param repository Repository id
+     * @param base Base URI of the repository
+     * @param requests Creates GET requests (not sent yet) by URL
+     * @param executor Executor parsing the prefetched POMs
+     * @param pom Content of the downloaded POM
+     */
+    void prefetch(
+        String repository, URI base, Function<String, Request> requests, Executor executor, InputStream pom
+    ) {
+        this.evict(System.currentTimeMillis());
+        if (this.live.get() >= this.maxBytes) {
+            return;
+        }
+        final List<String> locations;
+        try {
+            locations = references(pom);
+        } catch (final XMLStreamException ex) {
+            HttpTransporter.LOGGER.debug("Failed to parse POM: {}", ex.getMessage());
+            return;
+        }
+        for (final String location : locations) {
+            this.start(repository, base, requests, executor, base.resolve(location).toString());
+        }
+    }
+
+    /**
+     * Accounts a request served by a prefetched POM.
+     * @param url URL of the request
+     */
+    void served(String url) {
+        if (this.requested.contains(url)) {
+            this.hits.incrementAndGet();
+        }
+        final Parked claimed;
+        synchronized (this.parked) {
+            claimed = this.parked.remove(url);
+        }
+        if (claimed != null) {
+            this.live.addAndGet(-claimed.length);
+        }
+    }
+
+    /**
+     * Unparks all unclaimed POMs, once the session ends.
+     */
+    void close() {
+        this.evict(Long.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "%d POMs prefetched (%d bytes), %d requested by the resolver", this.prefetched.get(), this.bytes.get(),
+            this.hits.get()
+        );
+    }
+
+    private void start(
+        String repository, URI base, Function<String, Request> requests, Executor executor, String url
+    ) {
+        if (this.live.get() >= this.maxBytes || this.running.get() >= MAX_IN_FLIGHT || !this.requested.add(url)) {
+            return;
+        }
+        final InflightRequests.Flight flight = this.inflight.lead(HttpMethod.GET, repository, url);
+        if (flight == null) {
+            return;
+        }
+        this.running.incrementAndGet();
+        requests.apply(url).send(
+            new BufferingResponseListener(MAX_POM_LENGTH) {
+                @Override
+                public void onComplete(Result result) {
+                    PomPrefetch.this.running.decrementAndGet();
+                    if (result.isFailed() || result.getResponse().getStatus() != HttpStatus.OK_200) {
+                        flight.fail(
+                            new IOException(
+                                String.format("Prefetch of %s failed: %s", url, result.isFailed()
+                                    ? result.getFailure().getMessage() : result.getResponse().getStatus())
+                            )
+                        );
+                        return;
+                    }
+                    final byte[] content = this.getContent();
+                    PomPrefetch.this.bytes.addAndGet(content.length);
+                    PomPrefetch.this.prefetched.incrementAndGet();
+                    flight.park(null, content, result.getResponse().getHeaders());
+                    PomPrefetch.this.keep(repository, url, content.length);
+                    executor.execute(
+                        () -> PomPrefetch.this.prefetch(
+                            repository, base, requests, executor, new ByteArrayInputStream(content)
+                        )
+                    );
+                }
+            }
+        );
+    }
+
+    /**
+     * Accounts the parked POM, unparking the oldest ones above the max number of bytes.
+     * @param repository Repository id
+     * @param url URL of the POM
+     * @param length Length of the POM
+     */
+    void keep(String repository, String url, long length) {
+        synchronized (this.parked) {
+            this.parked.put(url, new Parked(repository, length, System.currentTimeMillis()));
+        }
+        this.live.addAndGet(length);
+        this.evict(System.currentTimeMillis());
+    }
+
+    /**
+     * Unparks the unclaimed POMs kept for too long, and the oldest ones while above the max number of bytes.
+     * @param now Current time in milliseconds
+     */
+    private void evict(long now) {
+        final Map<String, Parked> dropped = new HashMap<>();
+        synchronized (this.parked) {
+            for (final Iterator<Map.Entry<String, Parked>> it = this.parked.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<String, Parked> entry = it.next();
+                if (this.live.get() <= this.maxBytes && now - entry.getValue().time < PARK_TTL) {
+                    break;
+                }
+                it.remove();
+                this.live.addAndGet(-entry.getValue().length);
+                dropped.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (final Map.Entry<String, Parked> entry : dropped.entrySet()) {
+            this.inflight.unpark(HttpMethod.GET, entry.getValue().repository, entry.getKey());
+        }
+    }
+
+    /**
+     * Locations of POMs of the parent, imported BOMs and dependencies with literal coordinates.
+     * @param pom POM content
+     * @return Locations relative to the repository
+     * @throws XMLStreamException If POM is malformed
+     */
+    static List<String> references(InputStream pom) throws XMLStreamException {
+        final List<String> res = new ArrayList<>();
+        final XMLStreamReader reader = XML.createXMLStreamReader(pom);
+        try {
+            final Deque<String> path = new ArrayDeque<>();
+            String owner = null;
+            Map<String, String> coordinates = null;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if (coordinates != null && path.size() == owner.split("/").length && FIELDS.contains(name)) {
+                        coordinates.put(name, reader.getElementText().trim());
+                        continue;
+                    }
+                    path.addLast(name);
+                    final String current = String.join("/", path);
+                    if (coordinates == null && OWNERS.contains(current)) {
+                        owner = current;
+                        coordinates = new HashMap<>();
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    final String current = String.join("/", path);
+                    path.removeLast();
+                    if (coordinates != null && current.equals(owner)) {
+                        final String location = location(owner, coordinates);
+                        if (location != null) {
+                            res.add(location);
+                        }
+                        coordinates = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return Collections.unmodifiableList(res);
+    }
+
+    /**
+     * Location of the POM of the parent or dependency, if it should be prefetched.
+     * @return Location, {@code null} if coordinates are not literal or the dependency does not need its POM
+     */
+    private static String location(String element, Map<String, String> coordinates) {
+        final String group = coordinates.get("groupId");
+        final String artifact = coordinates.get("artifactId");
+        final String version = coordinates.get("version");
+        final boolean managed = element.startsWith("project/dependencyManagement");
+        String res = null;
+        if (literal(group) && literal(artifact) && literal(version)
+            && !"system".equals(coordinates.get("scope")) && !"true".equals(coordinates.get("optional"))
+            && (!managed || "import".equals(coordinates.get("scope")) && "pom".equals(coordinates.get("type")))) {
+            res = String.format(
+                "%s/%s/%s/%s-%s%s", group.replace('.', '/'), artifact, version, artifact, version, POM
+            );
+        }
+        return res;
+    }
+
+    private static boolean literal(String value) {
+        return value != null && !value.isEmpty() && value.chars().noneMatch(chr -> "${}[](),/\\".indexOf(chr) >= 0);
+    }
+
+    /**
+     * Unclaimed prefetched POM.
+     */
+    private static final class Parked {
+
+        private final String repository;
+
+        private final long length;
+
+        private final long time;
+
+        Parked(String repository, long length, long time) {
+            this.repository = repository;
+            this.length = length;
+            this.time = time;
+        }
+    }
+
+    private static XMLInputFactory newXmlFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
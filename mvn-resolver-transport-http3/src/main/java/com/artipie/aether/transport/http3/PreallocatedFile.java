@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File a download is written into, optionally extended up-front to the length the server advertises. The
+ * extension is only a size hint: the JDK has no {@code fallocate}, so writing the last byte leaves a sparse file
+ * whose blocks are still allocated as the content is written, the file size is just set once instead of growing
+ * with every write.
+ * <p>
+ * Servers may lie about the length: bytes past the advertised length are written through the channel, and the
+ * file is truncated to the last written byte when closed, so that a short body leaves no zeros at its end and
+ * can be resumed from its actual length, see {@link #written()}.
+ */
+final class PreallocatedFile implements Closeable, ResponseContent.Target {
+
+    /**
+     * Whether files are extended to the advertised length before the download, see {@link #extend}.
+     */
+    static final String CONFIG_PROP_PREALLOCATE = "aether.connector.http3.preallocate";
+
+    private final FileChannel channel;
+
+    /**
+     * Position of the first written byte.
+     */
+    private final long base;
+
+    /**
+     * Position after the last written byte.
+     */
+    private long end;
+
+    /**
+     * Ctor.
+     * @param channel Channel of the file
+     * @param base Position of the first written byte
+     */
+    private PreallocatedFile(FileChannel channel, long base) {
+        this.channel = channel;
+        this.base = base;
+        this.end = base;
+    }
+
+    /**
+     * Opens the file for writing from the offset.
+     * @param file File, truncated unless the offset is positive
+     * @param offset Position of the first byte to write
+     * @param length Advertised length of the file, {@code offset} or less if not known
+     * @param preallocate Whether to extend the file to the length
+     * @return Open file
+     * @throws IOException On error
+     */
+    static PreallocatedFile open(Path file, long offset, long length, boolean preallocate) throws IOException {
+        final FileChannel channel = offset > 0L
+            ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            );
+        try {
+            if (preallocate && length > offset) {
+                extend(channel, length);
+            }
+        } catch (final IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        return new PreallocatedFile(channel, offset);
+    }
+
+    /**
+     * Extends the file to the length, unless it is longer already. It is a size hint, not a reservation of
+     * blocks: the file is sparse until its content is written.
+     * @param channel Channel of the file
+     * @param length Length
+     * @throws IOException On error
+     */
+    static void extend(FileChannel channel, long length) throws IOException {
+        if (length > 0L && channel.size() < length) {
+            // the JDK has no fallocate, writing the last byte only sets the size
+            channel.write(ByteBuffer.allocate(1), length - 1L);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer data, long position) throws IOException {
+        final int res = this.channel.write(data, position);
+        this.end = Math.max(this.end, position + res);
+        return res;
+    }
+
+    /**
+     * Number of bytes written since the offset.
+     * @return Number of bytes
+     */
+    long written() {
+        return this.end - this.base;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.channel.size() > this.end) {
+                this.channel.truncate(this.end);
+            }
+        } finally {
+            this.channel.close();
+        }
+    }
+}
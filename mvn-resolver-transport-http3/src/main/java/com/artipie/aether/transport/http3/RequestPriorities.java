@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.util.ConfigUtils;
+
+/**
+ * RFC 9218 extensible priorities of requests: requests are classified by the path of their URL into metadata,
+ * POMs, checksums and artifacts, and each class is sent with its {@code Priority} header, so that HTTP/3 and
+ * HTTP/2 servers serve the small files the resolution waits on before bulk artifacts sharing the connection.
+ */
+final class RequestPriorities {
+
+    /**
+     * Comma separated classification table of {@code suffix=class} entries, the first entry the path ends with
+     * gives the class, {@value #ARTIFACT} otherwise.
+     */
+    static final String CONFIG_PROP_CLASSES = "aether.connector.http3.priority.classes";
+
+    /**
+     * Prefix of the {@code Priority} header value of a class, such as {@code aether.connector.http3.priority.pom};
+     * empty value sends no header for the class.
+     */
+    static final String CONFIG_PROP_PRIORITY = "aether.connector.http3.priority.";
+
+    static final String METADATA = "metadata";
+
+    static final String POM = "pom";
+
+    static final String CHECKSUM = "checksum";
+
+    static final String ARTIFACT = "artifact";
+
+    /**
+     * Default table: {@code maven-metadata.xml} and its checksum files are metadata, other XML files (such as
+     * artifacts of {@code xml} type) and signatures are artifacts.
+     */
+    static final String DEFAULT_CLASSES = String.join(
+        ",", "/maven-metadata.xml=metadata", "/maven-metadata.xml.sha1=metadata",
+        "/maven-metadata.xml.sha256=metadata", "/maven-metadata.xml.sha512=metadata",
+        "/maven-metadata.xml.md5=metadata", ".pom=pom", ".sha1=checksum", ".sha256=checksum", ".sha512=checksum",
+        ".md5=checksum"
+    );
+
+    private static final Map<String, String> DEFAULT_PRIORITIES = new HashMap<>();
+
+    /**
+     * Parameters of RFC 9218 priority: urgency and incremental flag.
+     */
+    private static final Pattern PRIORITY = Pattern.compile("(u=[0-7]|i(=\\?[01])?)(\\s*,\\s*(u=[0-7]|i(=\\?[01])?))?");
+
+    static {
+        DEFAULT_PRIORITIES.put(METADATA, "u=0");
+        DEFAULT_PRIORITIES.put(POM, "u=1");
+        DEFAULT_PRIORITIES.put(CHECKSUM, "u=2");
+        DEFAULT_PRIORITIES.put(ARTIFACT, "u=4");
+    }
+
+    /**
+     * Suffixes and classes, in order.
+     */
+    private final List<String[]> classes;
+
+    /**
+     * Header values by class, absent if no header is sent.
+     */
+    private final Map<String, String> priorities;
+
+    /**
+     * Ctor.
+     * @param classes Value of {@link #CONFIG_PROP_CLASSES}
+     * @param priorities Header values by class, empty values are not sent
+     * @throws IllegalArgumentException If the configuration is malformed
+     */
+    RequestPriorities(String classes, Map<String, String> priorities) {
+        final List<String[]> table = new ArrayList<>();
+        for (final String item : classes.split(",")) {
+            if (item.trim().isEmpty()) {
+                continue;
+            }
+            final String[] entry = item.split("=", 2);
+            if (entry.length != 2 || !priorities.containsKey(entry[1].trim())) {
+                throw new IllegalArgumentException(
+                    String.format("Unsupported '%s' entry of %s", item, CONFIG_PROP_CLASSES)
+                );
+            }
+            table.add(new String[] {entry[0].trim().toLowerCase(Locale.ROOT), entry[1].trim()});
+        }
+        final Map<String, String> values = new HashMap<>();
+        for (final Map.Entry<String, String> entry : priorities.entrySet()) {
+            final String value = entry.getValue().trim();
+            if (!value.isEmpty()) {
+                if (!PRIORITY.matcher(value).matches()) {
+                    throw new IllegalArgumentException(
+                        String.format("Unsupported '%s' value of %s%s", value, CONFIG_PROP_PRIORITY, entry.getKey())
+                    );
+                }
+                values.put(entry.getKey(), value);
+            }
+        }
+        this.classes = Collections.unmodifiableList(table);
+        this.priorities = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Reads the configuration of the repository.
+     * @param session Session
+     * @param repository Repository id
+     * @return Priorities
+     */
+    static RequestPriorities of(RepositorySystemSession session, String repository) {
+        final Map<String, String> priorities = new HashMap<>();
+        for (final Map.Entry<String, String> entry : DEFAULT_PRIORITIES.entrySet()) {
+            priorities.put(
+                entry.getKey(),
+                ConfigUtils.getString(
+                    session, entry.getValue(),
+                    CONFIG_PROP_PRIORITY + entry.getKey() + "." + repository, CONFIG_PROP_PRIORITY + entry.getKey()
+                )
+            );
+        }
+        return new RequestPriorities(
+            ConfigUtils.getString(session, DEFAULT_CLASSES, CONFIG_PROP_CLASSES), priorities
+        );
+    }
+
+    /**
+     * Class of the request.
+     * @param path Path of the URL
+     * @return Class
+     */
+    String classify(String path) {
+        String res = ARTIFACT;
+        if (path != null) {
+            final String lower = path.toLowerCase(Locale.ROOT);
+            for (final String[] entry : this.classes) {
+                if (lower.endsWith(entry[0])) {
+                    res = entry[1];
+                    break;
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Value of the {@code Priority} header of the request.
+     * @param path Path of the URL
+     * @return Header value, {@code null} if no header is sent
+     */
+    String priority(String path) {
+        return this.priorities.get(this.classify(path));
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ObjLongConsumer;
+
+import org.eclipse.aether.spi.connector.transport.TransportListener;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.jetty.client.Response;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.content.AsyncContent;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * Response listener which holds the response content until the caller decides, once the headers are received,
+ * how to consume it: as an {@link InputStream}, or by writing the chunks received from the network straight into
+ * a {@link FileChannel} as they arrive, without copying them into intermediate arrays and without a thread
+ * blocked per read.
+ * <p>
+ * The content must be consumed or the instance closed, otherwise the response (and its connection or stream)
+ * is never released.
+ */
+final class ResponseContent implements Response.Listener, Closeable {
+
+    /**
+     * Consumer of content chunks, it must call the demander to receive the next chunk.
+     */
+    private interface Sink {
+        void accept(Content.Chunk chunk, Runnable demander);
+    }
+
+    /**
+     * Positional writer of the content, such as {@link FileChannel#write(ByteBuffer, long)}.
+     */
+    interface Target {
+        int write(ByteBuffer data, long position) throws IOException;
+    }
+
+    private final CompletableFuture<Response> headers = new CompletableFuture<>();
+
+    /**
+     * Completed once the whole content is consumed or the response failed.
+     */
+    private final CompletableFuture<Void> end = new CompletableFuture<>();
+
+    private volatile Response response;
+
+    private Sink sink;
+
+    private Content.Chunk pending;
+
+    private Runnable demander;
+
+    private InputStream stream;
+
+    /**
+     * Min throughput of the content, {@code null} if not enforced.
+     */
+    private ThroughputFloor floor;
+
+    /**
+     * Demands the next chunk after a chunk of the length, {@code null} if bandwidth is not limited.
+     */
+    private ObjLongConsumer<Runnable> pacer;
+
+    @Override
+    public void onHeaders(Response resp) {
+        this.response = resp;
+        this.headers.complete(resp);
+    }
+
+    @Override
+    public void onContent(Response resp, Content.Chunk chunk, Runnable demand) {
+        final Sink target;
+        synchronized (this) {
+            if (this.sink == null) {
+                // Jetty releases the chunk once this method returns
+                chunk.retain();
+                this.pending = chunk;
+                this.demander = demand;
+                return;
+            }
+            target = this.sink;
+        }
+        target.accept(chunk, demand);
+    }
+
+    @Override
+    public void onSuccess(Response resp) {
+        this.end.complete(null);
+    }
+
+    @Override
+    public void onFailure(Response resp, Throwable failure) {
+        this.headers.completeExceptionally(failure);
+        this.end.completeExceptionally(failure);
+    }
+
+    /**
+     * Waits for the response headers.
+     * @param timeout Timeout
+     * @param unit Timeout unit
+     * @return Response
+     * @throws InterruptedException If interrupted
+     * @throws TimeoutException If headers are not received in time
+     * @throws ExecutionException If request failed
+     */
+    Response get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException, ExecutionException {
+        return this.headers.get(timeout, unit);
+    }
+
+    /**
+     * Stage completed by the network thread once the response headers are received or the request failed.
+     * @return Stage
+     */
+    CompletionStage<Response> received() {
+        return this.headers.minimalCompletionStage();
+    }
+
+    /**
+     * Enforces the min throughput of the content from the moment it is consumed.
+     * @param limit Min throughput
+     */
+    synchronized void watch(ThroughputFloor limit) {
+        this.floor = limit;
+    }
+
+    /**
+     * Limits the bandwidth of the content: the next chunk is demanded by the pacer, see
+     * {@link TokenBucket#pacer(org.eclipse.jetty.util.thread.Scheduler)}.
+     * @param demands Pacer of demands
+     */
+    synchronized void shape(ObjLongConsumer<Runnable> demands) {
+        this.pacer = demands;
+    }
+
+    /**
+     * Status of the received response.
+     * @return Status code
+     */
+    int status() {
+        return this.response.getStatus();
+    }
+
+    /**
+     * Protocol version negotiated for the received response.
+     * @return Version
+     */
+    HttpVersion version() {
+        return this.response.getVersion();
+    }
+
+    /**
+     * Content as input stream.
+     * @return Input stream
+     */
+    synchronized InputStream stream() {
+        if (this.stream == null) {
+            final AsyncContent content = new AsyncContent();
+            this.end.whenComplete(
+                (ignored, err) -> {
+                    if (err == null) {
+                        content.close();
+                    } else {
+                        content.fail(err);
+                    }
+                }
+            );
+            this.attach(
+                (chunk, demand) -> {
+                    chunk.retain();
+                    content.write(
+                        false, chunk.getByteBuffer(),
+                        Callback.from(() -> { chunk.release(); demand.run(); }, err -> chunk.release())
+                    );
+                }
+            );
+            this.stream = Content.Source.asInputStream(content);
+        }
+        return this.stream;
+    }
+
+    /**
+     * Writes content into the channel at the position. Chunks are written and reported to the listener by Jetty
+     * threads as they arrive, the calling thread only waits for the end of the content.
+     * @param channel Channel to write to
+     * @param position Position of the first byte
+     * @param limit Max number of bytes to transfer, the rest of the response is aborted
+     * @param listener Listener notified of each written chunk
+     * @return Number of written bytes
+     * @throws IOException On error
+     * @throws TransferCancelledException If listener cancelled the transfer
+     */
+    long transferTo(FileChannel channel, long position, long limit, TransportListener listener)
+        throws IOException, TransferCancelledException {
+        return this.transferTo((Target) channel::write, position, limit, listener);
+    }
+
+    /**
+     * Writes content into the target at the position, see {@link #transferTo(FileChannel, long, long,
+     * TransportListener)}.
+     * @param target Target to write to
+     * @param position Position of the first byte
+     * @param limit Max number of bytes to transfer, the rest of the response is aborted
+     * @param listener Listener notified of each written chunk
+     * @return Number of written bytes
+     * @throws IOException On error
+     * @throws TransferCancelledException If listener cancelled the transfer
+     */
+    long transferTo(Target target, long position, long limit, TransportListener listener)
+        throws IOException, TransferCancelledException {
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+        final long[] transferred = {0L};
+        this.attach(
+            (chunk, demand) -> {
+                if (done.isDone()) {
+                    return;
+                }
+                try {
+                    final ByteBuffer data = chunk.getByteBuffer().slice();
+                    if (data.remaining() > limit - transferred[0]) {
+                        data.limit((int) (limit - transferred[0]));
+                    }
+                    final ByteBuffer progress = data.duplicate();
+                    while (data.hasRemaining()) {
+                        transferred[0] += target.write(data, position + transferred[0]);
+                    }
+                    listener.transportProgressed(progress);
+                } catch (final IOException | TransferCancelledException ex) {
+                    done.completeExceptionally(ex);
+                    this.response.abort(ex);
+                    return;
+                }
+                if (transferred[0] >= limit) {
+                    done.complete(transferred[0]);
+                    this.response.abort(new IOException("Transfer limit reached"));
+                } else {
+                    demand.run();
+                }
+            }
+        );
+        this.end.whenComplete(
+            (ignored, err) -> {
+                if (err == null) {
+                    done.complete(transferred[0]);
+                } else {
+                    done.completeExceptionally(err);
+                }
+            }
+        );
+        try {
+            return done.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.response.abort(ex);
+            throw new IOException(ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof TransferCancelledException) {
+                throw (TransferCancelledException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Drops the content as it arrives, so that small bodies of error responses do not cost the connection
+     * as aborting would.
+     */
+    void discard() {
+        this.attach((chunk, demand) -> demand.run());
+    }
+
+    /**
+     * Releases the response, aborting it unless the content was consumed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.stream != null) {
+            this.stream.close();
+        }
+        if (!this.end.isDone() && this.response != null) {
+            this.response.abort(new IOException("Response content is not consumed"));
+        }
+    }
+
+    /**
+     * Sets the sink of the content, passing it the chunk received before, if any.
+     */
+    private void attach(Sink consumer) {
+        final Content.Chunk chunk;
+        final Runnable demand;
+        final Sink target;
+        synchronized (this) {
+            final ThroughputFloor limit = this.floor;
+            final ObjLongConsumer<Runnable> shaper = this.pacer;
+            if (limit == null && shaper == null) {
+                target = consumer;
+            } else {
+                if (limit != null) {
+                    limit.started();
+                }
+                target = (data, next) -> {
+                    final int length = data.remaining();
+                    if (limit != null) {
+                        try {
+                            limit.received(length);
+                        } catch (final ThroughputFloor.SlowTransferException ex) {
+                            this.response.abort(ex);
+                            return;
+                        }
+                    }
+                    consumer.accept(data, shaper == null ? next : () -> shaper.accept(next, length));
+                };
+            }
+            this.sink = target;
+            chunk = this.pending;
+            demand = this.demander;
+            this.pending = null;
+            this.demander = null;
+        }
+        if (chunk != null) {
+            try {
+                target.accept(chunk, demand);
+            } finally {
+                chunk.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+import org.eclipse.aether.spi.connector.transport.TransportListener;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+
+/**
+ * Download of a large file in several byte range segments fetched concurrently, which the multiplexing
+ * clients (HTTP/3 and HTTP/2) send as separate streams over the same connection. Over HTTP/1.1 each segment
+ * would open another TCP connection, so the file is downloaded in segments there only if enabled by
+ * {@link #CONFIG_PROP_HTTP11}. The first segment is read
+ * from the response of the original request, which is aborted after it, the other ones are requested with
+ * {@code Range} and {@code If-Range} headers and written into the file at their offsets.
+ * <p>
+ * Resolver computes checksums of the downloaded data from {@link TransportListener#transportProgressed(ByteBuffer)}
+ * calls, so the progress is reported in order: the first segment as it streams, the others from the file once
+ * they are complete.
+ */
+final class SegmentedDownload {
+
+    /**
+     * Number of concurrent segments, {@code 1} disables segmented downloads.
+     */
+    static final String CONFIG_PROP_SEGMENTS = "aether.connector.http3.segments";
+
+    static final int DEFAULT_SEGMENTS = 4;
+
+    /**
+     * Min length (in bytes) of the file to download in segments.
+     */
+    static final String CONFIG_PROP_THRESHOLD = "aether.connector.http3.segments.threshold";
+
+    static final long DEFAULT_THRESHOLD = 32L * 1024L * 1024L;
+
+    /**
+     * Whether to download in segments over HTTP/1.1 connections as well.
+     */
+    static final String CONFIG_PROP_HTTP11 = "aether.connector.http3.segments.http11";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Supplier of new GET requests of the file, not sent yet.
+     */
+    private final Supplier<Request> requests;
+
+    private final String validator;
+
+    private final long length;
+
+    private final int segments;
+
+    private final TransportListener listener;
+
+    /**
+     * Demands the next chunk of a segment after a chunk of the length, see {@link TokenBucket}.
+     */
+    private final ObjLongConsumer<Runnable> pacer;
+
+    /**
+     * Max time in milliseconds to wait for the segments, {@code 0} for no limit.
+     */
+    private final long timeout;
+
+    /**
+     * Ctor.
+     * @param requests Supplier of new GET requests of the file
+     * @param validator Validator of the original response, see {@link PartialDownloads#validator(HttpFields)}
+     * @param length Length of the file
+     * @param segments Number of segments
+     * @param listener Transport listener
+     * @param pacer Pacer of demands, see {@link TokenBucket#pacer(org.eclipse.jetty.util.thread.Scheduler)}
+     * @param timeout Max time in milliseconds to wait for the segments, {@code 0} for no limit
+     */
+    SegmentedDownload(
+        Supplier<Request> requests, String validator, long length, int segments, TransportListener listener,
+        ObjLongConsumer<Runnable> pacer, long timeout
+    ) {
+        this.requests = requests;
+        this.validator = validator;
+        this.length = length;
+        this.segments = segments;
+        this.listener = listener;
+        this.pacer = pacer;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Whether the response allows downloading in segments: it is long enough, has a validator, accepts
+     * byte ranges and is not encoded.
+     * @param headers Response headers
+     * @param length Response content length
+     * @param threshold Min length
+     * @param segments Number of segments
+     * @return True if segmented download can be used
+     */
+    static boolean applicable(HttpFields headers, long length, long threshold, int segments) {
+        return segments > 1 && length >= threshold && length >= segments
+            && "bytes".equalsIgnoreCase(headers.get(HttpHeader.ACCEPT_RANGES))
+            && headers.get(HttpHeader.CONTENT_ENCODING) == null
+            && PartialDownloads.validator(headers) != null;
+    }
+
+    /**
+     * Whether segments are sent as streams over the connection of the response instead of new connections.
+     * @param version Protocol version negotiated for the response
+     * @return True for HTTP/3 and HTTP/2
+     */
+    static boolean multiplexed(HttpVersion version) {
+        return version == HttpVersion.HTTP_3 || version == HttpVersion.HTTP_2;
+    }
+
+    /**
+     * Downloads the file.
+     * @param first Content of the original response, closed by this method
+     * @param file File to write to
+     * @param preallocate Whether to extend the file to its length first, see {@link PreallocatedFile}
+     * @return False if server did not honour ranges (or sent more than a range): the file should be downloaded in
+     *  a single stream then. The first segment is already reported to the listener by then, the single stream download reports
+     *  {@link TransportListener#transportStarted(long, long)} from offset zero again, which resets the digests
+     *  of the resolver
+     * @throws IOException On error
+     * @throws TransferCancelledException If transfer was cancelled
+     */
+    boolean download(ResponseContent first, Path file, boolean preallocate)
+        throws IOException, TransferCancelledException {
+        final long size = (this.length + this.segments - 1) / this.segments;
+        final List<Request> sent = new ArrayList<>(this.segments - 1);
+        final List<CompletableFuture<Boolean>> results = new ArrayList<>(this.segments - 1);
+        try (FileChannel channel = FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ,
+            StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            if (preallocate) {
+                PreallocatedFile.extend(channel, this.length);
+            }
+            for (long from = size; from < this.length; from += size) {
+                final Request request = this.requests.get();
+                sent.add(request);
+                results.add(this.segment(request, channel, from, Math.min(this.length, from + size) - 1L));
+            }
+            try (ResponseContent content = first) {
+                this.listener.transportStarted(0L, this.length);
+                if (content.transferTo(channel, 0L, size, this.listener) != size) {
+                    throw new IOException("Unexpected end of the first segment");
+                }
+            }
+            for (final CompletableFuture<Boolean> result : results) {
+                final boolean honoured;
+                if (this.timeout > 0L) {
+                    honoured = result.get(this.timeout, TimeUnit.MILLISECONDS);
+                } else {
+                    honoured = result.get();
+                }
+                if (!honoured) {
+                    HttpTransporter.LOGGER.debug("Server ignored byte ranges, downloading in a single stream");
+                    return false;
+                }
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            for (long pos = size; pos < this.length; ) {
+                buffer.clear();
+                final int read = channel.read(buffer, pos);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of segmented download at " + pos);
+                }
+                pos += read;
+                buffer.flip();
+                this.listener.transportProgressed(buffer);
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (final TimeoutException ex) {
+            throw new IOException("Segments are not downloaded in time", ex);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        } finally {
+            for (final Request request : sent) {
+                request.abort(new IOException("Segmented download is over"));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends request of the segment writing its content into the channel.
+     * @return Future completed with false if the server does not honour the range
+     */
+    private CompletableFuture<Boolean> segment(Request request, FileChannel channel, long from, long to) {
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        final long[] pos = {from};
+        request.headers(
+            fields -> fields.put(HttpHeader.RANGE, String.format("bytes=%d-%d", from, to))
+                .put(HttpHeader.IF_RANGE, this.validator)
+                .put(HttpHeader.ACCEPT_ENCODING, "identity")
+        ).onResponseHeaders(
+            response -> {
+                final boolean honoured;
+                if (response.getStatus() == HttpStatus.PARTIAL_CONTENT_206) {
+                    try {
+                        honoured = PartialDownloads.matches(response.getHeaders(), from, to, this.length);
+                    } catch (final IOException ex) {
+                        response.abort(ex);
+                        return;
+                    }
+                } else {
+                    honoured = false;
+                }
+                if (!honoured) {
+                    result.complete(false);
+                    response.abort(new IOException("Range is not honoured, status " + response.getStatus()));
+                }
+            }
+        ).onResponseContentAsync(
+            (response, chunk, demand) -> {
+                final ByteBuffer content = chunk.getByteBuffer().slice();
+                final int length = content.remaining();
+                if (length > to + 1L - pos[0]) {
+                    // never write into the next segment, such a server does not honour ranges either
+                    result.complete(false);
+                    response.abort(new IOException(String.format("Segment %d-%d exceeds its range", from, to)));
+                    return;
+                }
+                try {
+                    while (content.hasRemaining()) {
+                        pos[0] += channel.write(content, pos[0]);
+                    }
+                } catch (final IOException ex) {
+                    response.abort(ex);
+                    return;
+                }
+                this.pacer.accept(demand, length);
+            }
+        ).send(
+            res -> {
+                if (res.isFailed()) {
+                    result.completeExceptionally(res.getFailure());
+                } else if (pos[0] != to + 1L) {
+                    result.completeExceptionally(
+                        new IOException(String.format("Segment %d-%d ended at %d", from, to, pos[0]))
+                    );
+                } else {
+                    result.complete(true);
+                }
+            }
+        );
+        return result;
+    }
+}
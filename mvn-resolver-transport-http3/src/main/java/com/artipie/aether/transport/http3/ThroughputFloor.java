@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimum throughput of a response body, measured over periods of {@link #CONFIG_PROP_PERIOD} seconds as chunks
+ * arrive: a body trickling below the floor is aborted with {@link SlowTransferException} and the download is
+ * retried, resuming what was received. Bodies which stall completely are aborted by the idle timeout of the
+ * request, {@link org.eclipse.aether.ConfigurationProperties#REQUEST_TIMEOUT}.
+ * <p>
+ * Chunks of a response are delivered one at a time, so the instance is not thread-safe.
+ */
+final class ThroughputFloor {
+
+    /**
+     * Min number of bytes per second of a response body, {@code 0} disables the floor.
+     */
+    static final String CONFIG_PROP_MIN_THROUGHPUT = "aether.connector.http3.minThroughput";
+
+    /**
+     * Period in seconds the throughput is measured over.
+     */
+    static final String CONFIG_PROP_PERIOD = "aether.connector.http3.minThroughput.period";
+
+    static final int DEFAULT_PERIOD = 30;
+
+    /**
+     * Number of times a download below the floor is retried.
+     */
+    static final int RETRIES = 2;
+
+    private final long bytesPerSecond;
+
+    private final long period;
+
+    private long start;
+
+    private long bytes;
+
+    /**
+     * Ctor.
+     * @param bytesPerSecond Min number of bytes per second
+     * @param period Period in seconds
+     */
+    ThroughputFloor(long bytesPerSecond, int period) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.period = TimeUnit.SECONDS.toNanos(Math.max(1, period));
+    }
+
+    /**
+     * Starts measuring, once the body is consumed.
+     */
+    void started() {
+        this.start = System.nanoTime();
+        this.bytes = 0L;
+    }
+
+    /**
+     * Accounts a received chunk.
+     * @param length Length of the chunk
+     * @throws SlowTransferException If the throughput of the period ending now is below the floor
+     */
+    void received(int length) throws SlowTransferException {
+        this.bytes += length;
+        final long now = System.nanoTime();
+        final long elapsed = now - this.start;
+        if (elapsed >= this.period) {
+            final long rate = this.bytes * TimeUnit.SECONDS.toNanos(1L) / elapsed;
+            if (rate < this.bytesPerSecond) {
+                throw new SlowTransferException(
+                    String.format("Received %d bytes/s, less than %d bytes/s", rate, this.bytesPerSecond)
+                );
+            }
+            this.start = now;
+            this.bytes = 0L;
+        }
+    }
+
+    /**
+     * Response body was received below the floor.
+     */
+    static final class SlowTransferException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        SlowTransferException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * Bandwidth limit of the transfers of a repository, shared by its transporters within the session. The bucket
+ * is kept as a theoretical arrival time (GCRA) updated with compare-and-set, so accounting a chunk takes no lock;
+ * transfers above the rate are paced by delaying the demand of the next chunk with the client scheduler, which
+ * throttles the sender through flow control without blocking any thread.
+ * <p>
+ * Metadata (maven metadata, POMs and checksums, as classified by {@link RequestPriorities#classify(String)}) and
+ * artifacts have separate buckets, so that small requests the resolver waits on are not queued behind bulk
+ * transfers.
+ */
+final class TokenBucket {
+
+    /**
+     * Max number of bytes per second of artifact transfers, {@code 0} for no limit.
+     */
+    static final String CONFIG_PROP_MAX_BYTES_PER_SECOND = "aether.connector.http3.maxBytesPerSecond";
+
+    /**
+     * Max number of bytes per second of metadata transfers, {@code 0} for no limit.
+     */
+    static final String CONFIG_PROP_METADATA_MAX_BYTES_PER_SECOND =
+        "aether.connector.http3.metadata.maxBytesPerSecond";
+
+    /**
+     * Burst allowed above the rate, as time to transfer it at the rate.
+     */
+    private static final long BURST = TimeUnit.SECONDS.toNanos(1L);
+
+    private final long rate;
+
+    /**
+     * Theoretical arrival time of the next byte, the bucket is full when it is {@link #BURST} in the past.
+     */
+    private final AtomicLong tat;
+
+    /**
+     * Ctor.
+     * @param rate Max number of bytes per second
+     */
+    TokenBucket(long rate) {
+        this.rate = rate;
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Whether requests of the class are transferred within the metadata budget.
+     * @param cls Class of the request, see {@link RequestPriorities#classify(String)}
+     * @return True for all classes but artifacts
+     */
+    static boolean metadata(String cls) {
+        return !RequestPriorities.ARTIFACT.equals(cls);
+    }
+
+    /**
+     * Accounts transferred bytes.
+     * @param bytes Number of bytes
+     * @return Nanoseconds to wait before the next transfer, {@code 0} if it may proceed now
+     */
+    long take(long bytes) {
+        final long cost = bytes * TimeUnit.SECONDS.toNanos(1L) / this.rate;
+        while (true) {
+            final long now = System.nanoTime();
+            final long prev = this.tat.get();
+            final long next = Math.max(prev, now) + cost;
+            if (this.tat.compareAndSet(prev, next)) {
+                return Math.max(0L, next - now - BURST);
+            }
+        }
+    }
+
+    /**
+     * Time to wait before the next transfer.
+     * @return Nanoseconds, {@code 0} if it may proceed now
+     */
+    long delay() {
+        return Math.max(0L, this.tat.get() - System.nanoTime() - BURST);
+    }
+
+    /**
+     * Pacer of response content: accounts the received chunk and demands the next one once the rate allows it.
+     * @param scheduler Scheduler of delayed demands
+     * @return Pacer accepting the demand of the next chunk and the length of the received one
+     */
+    ObjLongConsumer<Runnable> pacer(Scheduler scheduler) {
+        return (demand, bytes) -> {
+            final long wait = this.take(bytes);
+            if (wait > 0L) {
+                scheduler.schedule(demand, wait, TimeUnit.NANOSECONDS);
+            } else {
+                demand.run();
+            }
+        };
+    }
+
+    /**
+     * Request content read no faster than the rate.
+     * @param content Content to send
+     * @param scheduler Scheduler of delayed demands
+     * @return Paced content
+     */
+    Request.Content pace(Request.Content content, Scheduler scheduler) {
+        return new Request.Content() {
+            @Override
+            public String getContentType() {
+                return content.getContentType();
+            }
+
+            @Override
+            public long getLength() {
+                return content.getLength();
+            }
+
+            @Override
+            public Content.Chunk read() {
+                Content.Chunk res = null;
+                if (TokenBucket.this.delay() == 0L) {
+                    res = content.read();
+                    if (res != null) {
+                        TokenBucket.this.take(res.remaining());
+                    }
+                }
+                return res;
+            }
+
+            @Override
+            public void demand(Runnable demand) {
+                final long wait = TokenBucket.this.delay();
+                if (wait > 0L) {
+                    scheduler.schedule(() -> content.demand(demand), wait, TimeUnit.NANOSECONDS);
+                } else {
+                    content.demand(demand);
+                }
+            }
+
+            @Override
+            public void fail(Throwable failure) {
+                content.fail(failure);
+            }
+
+            @Override
+            public void fail(Throwable failure, boolean last) {
+                content.fail(failure, last);
+            }
+
+            @Override
+            public boolean rewind() {
+                return content.rewind();
+            }
+        };
+    }
+}
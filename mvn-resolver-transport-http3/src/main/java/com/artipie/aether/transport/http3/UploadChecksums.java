@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.aether.spi.connector.transport.PutTask;
+import org.eclipse.aether.util.ChecksumUtils;
+import org.eclipse.jetty.http.HttpFields;
+
+/**
+ * Checksums of uploads declared in {@code X-Checksum-Sha1} and {@code X-Checksum-Sha256} request headers, so that
+ * servers such as Artipie and Nexus verify the body as it streams instead of digesting it once stored. Headers
+ * precede the body, so the checksums are computed before the request is sent, in one pass over the data.
+ * <p>
+ * Optionally the uploads of checksum files matching a declared checksum are not sent at all: the server is
+ * expected to serve them from the declared values then.
+ */
+final class UploadChecksums {
+
+    /**
+     * Whether checksums of uploads are declared in request headers.
+     */
+    static final String CONFIG_PROP_HEADERS = "aether.connector.http3.put.checksums";
+
+    /**
+     * Whether uploads of checksum files declared in headers of a previous upload are skipped.
+     */
+    static final String CONFIG_PROP_SKIP_SIDECARS = "aether.connector.http3.put.checksums.skipSidecars";
+
+    private static final String[] ALGORITHMS = {"SHA-1", "SHA-256"};
+
+    private static final String[] HEADERS = {"X-Checksum-Sha1", "X-Checksum-Sha256"};
+
+    private static final String[] EXTENSIONS = {".sha1", ".sha256"};
+
+    /**
+     * Extensions of checksum files, which are uploaded without headers.
+     */
+    private static final String[] CHECKSUMS = {".md5", ".sha1", ".sha256", ".sha512"};
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean skipSidecars;
+
+    /**
+     * Checksums declared by uploads sent so far, by URL of the checksum file.
+     */
+    private final ConcurrentMap<String, String> declared = new ConcurrentHashMap<>();
+
+    /**
+     * Ctor.
+     * @param skipSidecars Value of {@link #CONFIG_PROP_SKIP_SIDECARS}
+     */
+    UploadChecksums(boolean skipSidecars) {
+        this.skipSidecars = skipSidecars;
+    }
+
+    /**
+     * Computes the checksums of the upload, remembering them for {@link #redundant(String, PutTask)}.
+     * @param url URL of the upload
+     * @param task Upload task
+     * @return Headers declaring the checksums, empty for checksum files
+     * @throws IOException If the data can not be read
+     */
+    HttpFields headers(String url, PutTask task) throws IOException {
+        if (checksum(url)) {
+            return HttpFields.EMPTY;
+        }
+        final MessageDigest[] digests = new MessageDigest[ALGORITHMS.length];
+        for (int idx = 0; idx < ALGORITHMS.length; ++idx) {
+            digests[idx] = digest(ALGORITHMS[idx]);
+        }
+        try (InputStream data = task.newInputStream()) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read = data.read(buffer); read >= 0; read = data.read(buffer)) {
+                for (final MessageDigest digest : digests) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        final HttpFields.Mutable res = HttpFields.build();
+        for (int idx = 0; idx < ALGORITHMS.length; ++idx) {
+            final String value = ChecksumUtils.toHexString(digests[idx].digest());
+            res.add(HEADERS[idx], value);
+            if (this.skipSidecars) {
+                this.declared.put(url + EXTENSIONS[idx], value);
+            }
+        }
+        return res.asImmutable();
+    }
+
+    /**
+     * Whether the upload is a checksum file with the content declared in headers of a previous upload.
+     * @param url URL of the upload
+     * @param task Upload task
+     * @return True if the upload can be skipped
+     * @throws IOException If the data can not be read
+     */
+    boolean redundant(String url, PutTask task) throws IOException {
+        final String value = this.declared.remove(url);
+        if (value == null) {
+            return false;
+        }
+        try (InputStream data = task.newInputStream()) {
+            return value.equalsIgnoreCase(new String(data.readAllBytes(), StandardCharsets.US_ASCII).trim());
+        }
+    }
+
+    private static boolean checksum(String url) {
+        for (final String ext : CHECKSUMS) {
+            if (url.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
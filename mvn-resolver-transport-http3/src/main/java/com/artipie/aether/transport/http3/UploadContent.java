@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import org.eclipse.aether.spi.connector.transport.TransportListener;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.io.Content;
+
+/**
+ * Request content of an upload reporting its progress to the task listener as Jetty reads it. Rewinding the
+ * content, when the request is repeated over another protocol, restarts the reported transfer.
+ */
+final class UploadContent implements Request.Content {
+
+    private final Request.Content content;
+
+    private final long length;
+
+    private final TransportListener listener;
+
+    /**
+     * Ctor.
+     * @param content Content to upload, rewindable if the request may be repeated
+     * @param length Length of the content, sent as {@code Content-Length} if the content does not know it,
+     *  {@code -1} if unknown
+     * @param listener Listener of the task
+     */
+    UploadContent(Request.Content content, long length, TransportListener listener) {
+        this.content = content;
+        this.length = length;
+        this.listener = listener;
+    }
+
+    @Override
+    public String getContentType() {
+        return this.content.getContentType();
+    }
+
+    @Override
+    public long getLength() {
+        return this.length;
+    }
+
+    @Override
+    public Content.Chunk read() {
+        Content.Chunk res = this.content.read();
+        if (res != null && res.hasRemaining()) {
+            try {
+                this.listener.transportProgressed(res.getByteBuffer().slice());
+            } catch (final TransferCancelledException ex) {
+                res.release();
+                this.content.fail(ex);
+                res = Content.Chunk.from(ex);
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public void demand(Runnable demand) {
+        this.content.demand(demand);
+    }
+
+    @Override
+    public void fail(Throwable failure) {
+        this.content.fail(failure);
+    }
+
+    @Override
+    public void fail(Throwable failure, boolean last) {
+        this.content.fail(failure, last);
+    }
+
+    @Override
+    public boolean rewind() {
+        boolean res = this.content.rewind();
+        if (res) {
+            try {
+                this.listener.transportStarted(0L, this.getLength());
+            } catch (final TransferCancelledException ex) {
+                res = false;
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.eclipse.aether.util.FileUtils;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+
+/**
+ * Store of the last downloaded content of {@code maven-metadata.xml} files (and their checksums) with its
+ * validators ({@code ETag} and {@code Last-Modified}), keyed by URL and kept under the local repository.
+ * Validators are sent as {@code If-None-Match} and {@code If-Modified-Since} request headers, and the stored
+ * content is served when the server answers {@code 304 Not Modified}: the transporter does not know the
+ * destination file of the resolver, which downloads into a fresh temporary file each time.
+ */
+final class ValidatorStore {
+
+    /**
+     * Whether metadata is requested conditionally, disabled by default as the store keeps a second copy of the
+     * metadata next to the local repository.
+     */
+    static final String CONFIG_PROP_CONDITIONAL = "aether.connector.http3.conditional";
+
+    static final String DIR_NAME = "validators";
+
+    private static final String METADATA_PREFIX = "maven-metadata";
+
+    private static final String ETAG = "etag";
+
+    private static final String LAST_MODIFIED = "last-modified";
+
+    private final Path dir;
+
+    /**
+     * Ctor.
+     * @param dir Directory to keep the content in, {@code null} disables conditional requests
+     */
+    ValidatorStore(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Whether the resource is requested conditionally.
+     * @param location Location of the resource
+     * @return True for metadata files and their checksums
+     */
+    boolean applicable(URI location) {
+        final String path = location.getPath();
+        return this.dir != null && path != null
+            && path.substring(path.lastIndexOf('/') + 1).startsWith(METADATA_PREFIX);
+    }
+
+    /**
+     * Stored content of the URL.
+     * @param url URL
+     * @return Path, {@code null} if nothing is stored
+     */
+    Path data(String url) {
+        Path res = null;
+        if (this.dir != null) {
+            final Path data = this.dir.resolve(PartialDownloads.key(url));
+            if (Files.isRegularFile(data) && Files.isRegularFile(validatorsFile(data))) {
+                res = data;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Conditional request headers with validators of the stored content.
+     * @param data Stored content, see {@link #data(String)}
+     * @return Headers
+     * @throws IOException On error
+     */
+    HttpFields conditions(Path data) throws IOException {
+        final Properties props = new Properties();
+        try (InputStream input = Files.newInputStream(validatorsFile(data))) {
+            props.load(input);
+        }
+        final HttpFields.Mutable res = HttpFields.build();
+        final String etag = props.getProperty(ETAG);
+        if (etag != null) {
+            res.add(HttpHeader.IF_NONE_MATCH, etag);
+        }
+        final String modified = props.getProperty(LAST_MODIFIED);
+        if (modified != null) {
+            res.add(HttpHeader.IF_MODIFIED_SINCE, modified);
+        }
+        return res;
+    }
+
+    /**
+     * Stores downloaded content with its validators, unless the response has none.
+     * @param url URL
+     * @param content Downloaded content
+     * @param headers Response headers
+     */
+    void store(String url, InputStream content, HttpFields headers) {
+        final String etag = headers.get(HttpHeader.ETAG);
+        final String modified = headers.get(HttpHeader.LAST_MODIFIED);
+        if (this.dir == null || etag == null && modified == null) {
+            return;
+        }
+        final Path data = this.dir.resolve(PartialDownloads.key(url));
+        final Path validators = validatorsFile(data);
+        final Properties props = new Properties();
+        if (etag != null) {
+            props.setProperty(ETAG, etag);
+        }
+        if (modified != null) {
+            props.setProperty(LAST_MODIFIED, modified);
+        }
+        try {
+            Files.createDirectories(this.dir);
+            // validators mark the content as complete, so they go away first and come back last
+            Files.deleteIfExists(validators);
+            try (FileUtils.CollocatedTempFile tmp = FileUtils.newTempFile(data)) {
+                Files.copy(content, tmp.getPath(), StandardCopyOption.REPLACE_EXISTING);
+                tmp.move();
+            }
+            try (FileUtils.CollocatedTempFile tmp = FileUtils.newTempFile(validators)) {
+                try (OutputStream output = Files.newOutputStream(tmp.getPath())) {
+                    props.store(output, url);
+                }
+                tmp.move();
+            }
+        } catch (final IOException ex) {
+            HttpTransporter.LOGGER.debug("Failed to store validators of {}: {}", url, ex.getMessage());
+        }
+    }
+
+    private static Path validatorsFile(Path data) {
+        return data.resolveSibling(data.getFileName() + ".validators");
+    }
+}
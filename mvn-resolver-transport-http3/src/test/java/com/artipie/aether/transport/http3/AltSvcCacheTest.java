@@ -0,0 +1,47 @@
+package com.artipie.aether.transport.http3;
+
+import java.net.URI;
+import java.nio.file.Path;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AltSvcCacheTest {
+
+    private static final String ORIGIN = OriginExpirations.origin(URI.create("https://repo.example.com/maven2/"));
+
+    @Test
+    void parsesOrigin() {
+        MatcherAssert.assertThat(ORIGIN, new IsEqual<>("https://repo.example.com:443"));
+    }
+
+    @Test
+    void discoversHttp3AndPersistsIt(@TempDir final Path dir) {
+        final Path file = dir.resolve(AltSvcCache.FILE_NAME);
+        final AltSvcCache cache = new AltSvcCache(file);
+        MatcherAssert.assertThat(cache.supportsHttp3(ORIGIN), new IsEqual<>(false));
+        cache.update(ORIGIN, "h3-29=\":443\"; ma=3600, h3=\":443\"; ma=86400");
+        MatcherAssert.assertThat(cache.supportsHttp3(ORIGIN), new IsEqual<>(true));
+        MatcherAssert.assertThat(new AltSvcCache(file).supportsHttp3(ORIGIN), new IsEqual<>(true));
+        cache.update(ORIGIN, "clear");
+        MatcherAssert.assertThat(new AltSvcCache(file).supportsHttp3(ORIGIN), new IsEqual<>(false));
+    }
+
+    @Test
+    void ignoresOtherPortsAndExpiredEntries() {
+        final AltSvcCache cache = new AltSvcCache(null);
+        cache.update(ORIGIN, "h3=\":8443\"; ma=86400");
+        MatcherAssert.assertThat(cache.supportsHttp3(ORIGIN), new IsEqual<>(false));
+        cache.update(ORIGIN, "h3=\":443\"; ma=0");
+        MatcherAssert.assertThat(cache.supportsHttp3(ORIGIN), new IsEqual<>(false));
+    }
+
+    @Test
+    void ignoresHttp3OfCleartextOrigins() {
+        final AltSvcCache cache = new AltSvcCache(null);
+        final String origin = OriginExpirations.origin(URI.create("http://repo.example.com/maven2/"));
+        cache.update(origin, "h3=\":80\"; ma=86400");
+        MatcherAssert.assertThat(cache.supportsHttp3(origin), new IsEqual<>(false));
+    }
+}
@@ -0,0 +1,68 @@
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.hamcrest.core.IsNot;
+import org.hamcrest.core.IsNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BlobStoreTest {
+
+    private static final Map<String, String> ABC = Collections.singletonMap(
+        "SHA-1", "a9993e364706816aba3e25717850c26c9cd0d89d"
+    );
+
+    private static final Map<String, String> DEF = Collections.singletonMap(
+        "SHA-1", "589c22335a381f122d129225f5c0ba3056ed5811"
+    );
+
+    @Test
+    void servesStoredFileByChecksum(@TempDir final Path dir) throws Exception {
+        final BlobStore store = new BlobStore(dir.resolve("blobs"), BlobStore.DEFAULT_MAX_SIZE);
+        store.insert(Files.write(dir.resolve("abc.jar"), "abc".getBytes(StandardCharsets.US_ASCII)), ABC);
+        final Map<String, String> upper = Collections.singletonMap("SHA-1", ABC.get("SHA-1").toUpperCase());
+        try (SeekableByteChannel blob = store.open(upper)) {
+            final ByteBuffer data = ByteBuffer.allocate(3);
+            blob.read(data);
+            MatcherAssert.assertThat(new String(data.array(), StandardCharsets.US_ASCII), new IsEqual<>("abc"));
+        }
+        MatcherAssert.assertThat(store.open(DEF), new IsNull<>());
+        MatcherAssert.assertThat(
+            "Malformed checksum is ignored", store.open(Collections.singletonMap("SHA-1", "../../abc")), new IsNull<>()
+        );
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedFiles(@TempDir final Path dir) throws Exception {
+        final BlobStore store = new BlobStore(dir.resolve("blobs"), 5L);
+        store.insert(Files.write(dir.resolve("abc.jar"), "abc".getBytes(StandardCharsets.US_ASCII)), ABC);
+        try (SeekableByteChannel blob = store.open(ABC)) {
+            MatcherAssert.assertThat(blob, new IsNot<>(new IsNull<>()));
+        }
+        Files.walk(dir.resolve("blobs")).filter(Files::isRegularFile).forEach(
+            file -> {
+                try {
+                    Files.setLastModifiedTime(file, FileTime.fromMillis(0L));
+                } catch (final IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        );
+        store.insert(Files.write(dir.resolve("def.jar"), "def".getBytes(StandardCharsets.US_ASCII)), DEF);
+        MatcherAssert.assertThat("Old file is evicted", store.open(ABC), new IsNull<>());
+        try (SeekableByteChannel blob = store.open(DEF)) {
+            MatcherAssert.assertThat("New file is kept", blob, new IsNot<>(new IsNull<>()));
+        }
+    }
+}
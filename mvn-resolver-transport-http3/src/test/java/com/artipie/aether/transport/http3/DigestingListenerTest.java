@@ -0,0 +1,49 @@
+package com.artipie.aether.transport.http3;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import org.eclipse.aether.spi.connector.transport.TransportListener;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.hamcrest.core.IsNot;
+import org.junit.jupiter.api.Test;
+
+public class DigestingListenerTest {
+
+    private static final String SHA1 = "a9993e364706816aba3e25717850c26c9cd0d89d";
+
+    private static final String SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Test
+    void computesChecksumsOfStreamedChunks() throws Exception {
+        final DigestingListener listener = new DigestingListener(
+            new TransportListener() {}, DigestingListener.algorithms("SHA-1, SHA-256")
+        );
+        listener.transportStarted(0L, 3L);
+        final ByteBuffer first = ByteBuffer.wrap("ab".getBytes(StandardCharsets.US_ASCII));
+        listener.transportProgressed(first);
+        listener.transportProgressed(ByteBuffer.wrap("c".getBytes(StandardCharsets.US_ASCII)));
+        MatcherAssert.assertThat("Buffer is not consumed", first.remaining(), new IsEqual<>(2));
+        final Map<String, String> checksums = listener.checksums();
+        MatcherAssert.assertThat(checksums.get("SHA-1"), new IsEqual<>(SHA1));
+        MatcherAssert.assertThat(checksums.get("SHA-256"), new IsEqual<>(SHA256));
+    }
+
+    @Test
+    void reportsDeclaredChecksumMismatch() {
+        MatcherAssert.assertThat(
+            DigestingListener.mismatch(
+                Collections.singletonMap("SHA-1", SHA1), Collections.singletonMap("SHA-1", SHA1.toUpperCase())
+            ),
+            new IsEqual<>(null)
+        );
+        MatcherAssert.assertThat(
+            DigestingListener.mismatch(
+                Collections.singletonMap("SHA-1", SHA1), Collections.singletonMap("SHA-1", SHA256)
+            ),
+            new IsNot<>(new IsEqual<>(null))
+        );
+    }
+}
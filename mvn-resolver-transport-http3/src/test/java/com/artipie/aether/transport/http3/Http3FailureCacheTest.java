@@ -0,0 +1,45 @@
+package com.artipie.aether.transport.http3;
+
+import java.nio.file.Path;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class Http3FailureCacheTest {
+
+    private static final String ORIGIN = "https://repo.example.com:443";
+
+    @Test
+    void remembersFailuresAcrossBuilds(@TempDir final Path dir) {
+        final Path file = dir.resolve(Http3FailureCache.FILE_NAME);
+        final Http3FailureCache cache = new Http3FailureCache(file, Http3FailureCache.DEFAULT_TTL);
+        cache.failed(ORIGIN);
+        MatcherAssert.assertThat(cache.isBroken(ORIGIN), new IsEqual<>(true));
+        MatcherAssert.assertThat(
+            new Http3FailureCache(file, Http3FailureCache.DEFAULT_TTL).isBroken(ORIGIN), new IsEqual<>(true)
+        );
+        cache.succeeded(ORIGIN);
+        MatcherAssert.assertThat(
+            new Http3FailureCache(file, Http3FailureCache.DEFAULT_TTL).isBroken(ORIGIN), new IsEqual<>(false)
+        );
+    }
+
+    @Test
+    void probesBrokenOriginOncePerInterval() {
+        final Http3FailureCache cache = new Http3FailureCache(null, Http3FailureCache.DEFAULT_TTL);
+        MatcherAssert.assertThat("Working origin is not probed", cache.probe(ORIGIN), new IsEqual<>(false));
+        cache.failed(ORIGIN);
+        MatcherAssert.assertThat(cache.probe(ORIGIN), new IsEqual<>(true));
+        MatcherAssert.assertThat("Probe is not repeated", cache.probe(ORIGIN), new IsEqual<>(false));
+        cache.succeeded(ORIGIN);
+        MatcherAssert.assertThat(cache.isBroken(ORIGIN), new IsEqual<>(false));
+    }
+
+    @Test
+    void expiresFailures() {
+        final Http3FailureCache cache = new Http3FailureCache(null, 0);
+        cache.failed(ORIGIN);
+        MatcherAssert.assertThat(cache.isBroken(ORIGIN), new IsEqual<>(false));
+    }
+}
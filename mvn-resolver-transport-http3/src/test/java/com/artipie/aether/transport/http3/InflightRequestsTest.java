@@ -0,0 +1,56 @@
+package com.artipie.aether.transport.http3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpMethod;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class InflightRequestsTest {
+
+    private static final String URL = "https://repo.maven.apache.org/maven2/a/b/1/b-1.pom";
+
+    @Test
+    void sharesDownloadedFileWithFollowers(@TempDir final Path dir) throws Exception {
+        final Path shared = dir.resolve("shared");
+        final InflightRequests inflight = new InflightRequests(shared);
+        final InflightRequests.Flight leader = inflight.join(HttpMethod.GET, "central", URL);
+        final InflightRequests.Flight follower = inflight.join(HttpMethod.GET, "central", URL);
+        MatcherAssert.assertThat(leader.leader(), new IsEqual<>(true));
+        MatcherAssert.assertThat(follower.leader(), new IsEqual<>(false));
+        final Path file = Files.write(dir.resolve("b-1.pom"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        leader.complete(file, null, HttpFields.EMPTY);
+        MatcherAssert.assertThat(
+            "Next request starts a new flight", inflight.join(HttpMethod.GET, "central", URL).leader(),
+            new IsEqual<>(true)
+        );
+        Files.delete(file);
+        final InflightRequests.Shared result = follower.await();
+        MatcherAssert.assertThat(
+            "File is shared from private directory", result.file().getParent(), new IsEqual<>(shared)
+        );
+        try (InputStream is = result.open()) {
+            MatcherAssert.assertThat(
+                new String(is.readAllBytes(), StandardCharsets.UTF_8), new IsEqual<>("<project/>")
+            );
+        }
+        result.release();
+        MatcherAssert.assertThat("Shared file is deleted", Files.exists(result.file()), new IsEqual<>(false));
+    }
+
+    @Test
+    void passesFailureToFollowers() {
+        final InflightRequests inflight = new InflightRequests(null);
+        final InflightRequests.Flight leader = inflight.join(HttpMethod.HEAD, "central", URL);
+        final InflightRequests.Flight follower = inflight.join(HttpMethod.HEAD, "central", URL);
+        leader.fail(new IOException("Not found"));
+        Assertions.assertThrows(IOException.class, follower::await);
+    }
+}
@@ -0,0 +1,82 @@
+package com.artipie.aether.transport.http3;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpMethod;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Test;
+
+public class PomPrefetchTest {
+
+    private static final String POM = String.join(
+        "\n",
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+        "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">",
+        "  <parent><groupId>org.example</groupId><artifactId>parent</artifactId><version>1</version></parent>",
+        "  <artifactId>child</artifactId>",
+        "  <dependencyManagement><dependencies>",
+        "    <dependency><groupId>org.example</groupId><artifactId>bom</artifactId><version>2</version>",
+        "      <type>pom</type><scope>import</scope></dependency>",
+        "    <dependency><groupId>org.example</groupId><artifactId>managed</artifactId><version>3</version>",
+        "    </dependency>",
+        "  </dependencies></dependencyManagement>",
+        "  <dependencies>",
+        "    <dependency><groupId>org.example.lib</groupId><artifactId>lib</artifactId><version>4.0</version>",
+        "      <exclusions><exclusion><groupId>x</groupId><artifactId>y</artifactId></exclusion></exclusions>",
+        "    </dependency>",
+        "    <dependency><groupId>org.example</groupId><artifactId>prop</artifactId><version>${v}</version>",
+        "    </dependency>",
+        "    <dependency><groupId>org.example</groupId><artifactId>opt</artifactId><version>5</version>",
+        "      <optional>true</optional></dependency>",
+        "  </dependencies>",
+        "  <build><plugins><plugin><groupId>p</groupId><artifactId>p</artifactId><version>6</version></plugin>",
+        "  </plugins></build>",
+        "</project>"
+    );
+
+    @Test
+    void findsPomsWithLiteralCoordinates() throws Exception {
+        MatcherAssert.assertThat(
+            PomPrefetch.references(new ByteArrayInputStream(POM.getBytes(StandardCharsets.UTF_8))),
+            new IsEqual<>(
+                Arrays.asList(
+                    "org/example/parent/1/parent-1.pom",
+                    "org/example/bom/2/bom-2.pom",
+                    "org/example/lib/lib/4.0/lib-4.0.pom"
+                )
+            )
+        );
+    }
+
+    @Test
+    void unparksOldestPomsAboveMaxBytes() {
+        final InflightRequests inflight = new InflightRequests(null);
+        final PomPrefetch prefetch = new PomPrefetch(inflight, 10L);
+        for (final String url : Arrays.asList("a-1.pom", "b-1.pom")) {
+            inflight.lead(HttpMethod.GET, "central", url).park(null, new byte[8], HttpFields.EMPTY);
+            prefetch.keep("central", url, 8L);
+        }
+        MatcherAssert.assertThat(
+            "Oldest POM is unparked", inflight.join(HttpMethod.GET, "central", "a-1.pom").leader(),
+            new IsEqual<>(true)
+        );
+        MatcherAssert.assertThat(
+            "Newest POM is kept", inflight.join(HttpMethod.GET, "central", "b-1.pom").leader(), new IsEqual<>(false)
+        );
+    }
+
+    @Test
+    void unparksUnclaimedPomsOnClose() {
+        final InflightRequests inflight = new InflightRequests(null);
+        final PomPrefetch prefetch = new PomPrefetch(inflight, PomPrefetch.DEFAULT_MAX_BYTES);
+        inflight.lead(HttpMethod.GET, "central", "a-1.pom").park(null, new byte[8], HttpFields.EMPTY);
+        prefetch.keep("central", "a-1.pom", 8L);
+        prefetch.close();
+        MatcherAssert.assertThat(
+            inflight.join(HttpMethod.GET, "central", "a-1.pom").leader(), new IsEqual<>(true)
+        );
+    }
+}
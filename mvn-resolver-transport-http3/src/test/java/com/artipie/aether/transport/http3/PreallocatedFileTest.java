@@ -0,0 +1,39 @@
+package com.artipie.aether.transport.http3;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PreallocatedFileTest {
+
+    @Test
+    void truncatesShortContent(@TempDir final Path dir) throws Exception {
+        final Path file = dir.resolve("a.jar");
+        try (PreallocatedFile target = PreallocatedFile.open(file, 0L, 10L, true)) {
+            MatcherAssert.assertThat("File is extended", Files.size(file), new IsEqual<>(10L));
+            target.write(ByteBuffer.wrap("abcd".getBytes(StandardCharsets.US_ASCII)), 0L);
+            MatcherAssert.assertThat(target.written(), new IsEqual<>(4L));
+        }
+        MatcherAssert.assertThat(
+            new String(Files.readAllBytes(file), StandardCharsets.US_ASCII), new IsEqual<>("abcd")
+        );
+    }
+
+    @Test
+    void writesContentPastAdvertisedLength(@TempDir final Path dir) throws Exception {
+        final Path file = Files.write(dir.resolve("b.jar"), "ab".getBytes(StandardCharsets.US_ASCII));
+        try (PreallocatedFile target = PreallocatedFile.open(file, 2L, 6L, true)) {
+            target.write(ByteBuffer.wrap("cdef".getBytes(StandardCharsets.US_ASCII)), 2L);
+            target.write(ByteBuffer.wrap("gh".getBytes(StandardCharsets.US_ASCII)), 6L);
+            MatcherAssert.assertThat(target.written(), new IsEqual<>(6L));
+        }
+        MatcherAssert.assertThat(
+            new String(Files.readAllBytes(file), StandardCharsets.US_ASCII), new IsEqual<>("abcdefgh")
+        );
+    }
+}
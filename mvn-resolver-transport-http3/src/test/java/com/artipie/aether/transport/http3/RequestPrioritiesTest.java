@@ -0,0 +1,52 @@
+package com.artipie.aether.transport.http3;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.hamcrest.core.IsNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RequestPrioritiesTest {
+
+    @Test
+    void prioritizesMetadataOverArtifacts() {
+        final RequestPriorities priorities = RequestPriorities.of(MavenResolverIT.newSession(), "central");
+        MatcherAssert.assertThat(priorities.priority("/maven2/a/b/maven-metadata.xml"), new IsEqual<>("u=0"));
+        MatcherAssert.assertThat(priorities.priority("/maven2/a/b/1/b-1.pom"), new IsEqual<>("u=1"));
+        MatcherAssert.assertThat(priorities.priority("/maven2/a/b/1/b-1.pom.sha1"), new IsEqual<>("u=2"));
+        MatcherAssert.assertThat(priorities.priority("/maven2/a/b/1/b-1.jar"), new IsEqual<>("u=4"));
+    }
+
+    @Test
+    void prioritizesOnlyMavenMetadataAsMetadata() {
+        final RequestPriorities priorities = RequestPriorities.of(MavenResolverIT.newSession(), "central");
+        MatcherAssert.assertThat(
+            priorities.classify("/maven2/a/b/maven-metadata.xml.sha1"), new IsEqual<>(RequestPriorities.METADATA)
+        );
+        MatcherAssert.assertThat(
+            priorities.classify("/maven2/a/b/1/b-1-features.xml"), new IsEqual<>(RequestPriorities.ARTIFACT)
+        );
+        MatcherAssert.assertThat(
+            priorities.classify("/maven2/a/b/1/b-1.jar.asc"), new IsEqual<>(RequestPriorities.ARTIFACT)
+        );
+    }
+
+    @Test
+    void readsConfiguredTable() {
+        final Map<String, String> values = new HashMap<>();
+        values.put(RequestPriorities.METADATA, "u=0");
+        values.put(RequestPriorities.ARTIFACT, "");
+        values.put(RequestPriorities.CHECKSUM, "u=5, i");
+        final RequestPriorities priorities = new RequestPriorities(".module=metadata,.SHA1=checksum", values);
+        MatcherAssert.assertThat(priorities.priority("/a/b/1/b-1.module"), new IsEqual<>("u=0"));
+        MatcherAssert.assertThat(priorities.priority("/a/b/1/b-1.jar.sha1"), new IsEqual<>("u=5, i"));
+        MatcherAssert.assertThat("Empty value sends no header", priorities.priority("/a/b/1/b-1.pom"), new IsNull<>());
+        Assertions.assertThrows(
+            IllegalArgumentException.class, () -> new RequestPriorities(".pom=urgent", values)
+        );
+        values.put(RequestPriorities.POM, "u=9");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RequestPriorities("", values));
+    }
+}
@@ -0,0 +1,40 @@
+package com.artipie.aether.transport.http3;
+
+import java.util.concurrent.TimeUnit;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.IsEqual;
+import org.hamcrest.number.OrderingComparison;
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketTest {
+
+    @Test
+    void delaysTransfersAboveBurst() {
+        final TokenBucket bucket = new TokenBucket(1000L);
+        MatcherAssert.assertThat("Burst is allowed", bucket.take(1000L), new IsEqual<>(0L));
+        MatcherAssert.assertThat(bucket.delay(), new IsEqual<>(0L));
+        MatcherAssert.assertThat(
+            "Next second of data waits about a second", bucket.take(1000L),
+            OrderingComparison.greaterThan(TimeUnit.MILLISECONDS.toNanos(900L))
+        );
+        MatcherAssert.assertThat(bucket.delay(), OrderingComparison.greaterThan(0L));
+    }
+
+    @Test
+    void separatesMetadataFromArtifacts() {
+        final RequestPriorities classes = RequestPriorities.of(MavenResolverIT.newSession(), "central");
+        MatcherAssert.assertThat(
+            TokenBucket.metadata(classes.classify("/a/b/maven-metadata.xml")), new IsEqual<>(true)
+        );
+        MatcherAssert.assertThat(TokenBucket.metadata(classes.classify("/a/b/1/b-1.pom.sha1")), new IsEqual<>(true));
+        MatcherAssert.assertThat(TokenBucket.metadata(classes.classify("/a/b/1/b-1.jar")), new IsEqual<>(false));
+        MatcherAssert.assertThat(
+            "XML artifacts are not metadata", TokenBucket.metadata(classes.classify("/a/b/1/b-1.xml")),
+            new IsEqual<>(false)
+        );
+        MatcherAssert.assertThat(
+            "Signatures are not metadata", TokenBucket.metadata(classes.classify("/a/b/1/b-1.jar.asc")),
+            new IsEqual<>(false)
+        );
+    }
+}
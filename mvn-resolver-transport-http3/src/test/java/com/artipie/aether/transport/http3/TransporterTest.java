@@ -1,15 +1,39 @@
 package com.artipie.aether.transport.http3;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.net.ServerSocket;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.DefaultRepositoryCache;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.spi.connector.transport.GetTask;
 import org.eclipse.aether.spi.connector.transport.PeekTask;
 import org.eclipse.aether.spi.connector.transport.PutTask;
 import org.eclipse.aether.spi.connector.transport.TransportListener;
 import org.eclipse.aether.spi.connector.transport.Transporter;
+import org.eclipse.aether.util.ChecksumUtils;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http3.client.transport.HttpClientTransportOverHTTP3;
 import org.eclipse.jetty.io.Content;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
@@ -17,22 +41,50 @@ import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.core.IsEqual;
+import org.hamcrest.number.OrderingComparison;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 public class TransporterTest {
 
+    private static final String ETAG = "\"commons-cli-1.4\"";
+
     private int port;
 
     private Server server;
 
     private CountDownLatch latch;
 
+    private volatile String altSvc;
+
+    private volatile String range;
+
+    private volatile String sha1;
+
+    private volatile String encoding;
+
+    private volatile String priority;
+
+    private volatile String putSha256;
+
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private final AtomicInteger gets = new AtomicInteger();
+
+    private final AtomicInteger uploaded = new AtomicInteger();
+
+    private final AtomicInteger puts = new AtomicInteger();
+
+    private final Queue<String> ranges = new ConcurrentLinkedQueue<>();
+
     @BeforeEach
     void init() throws Exception {
         this.server = new Server();
@@ -42,20 +94,78 @@ public class TransporterTest {
         this.server.setHandler(new Handler.Abstract() {
             @Override
             public boolean handle(Request request, Response response, Callback callback) throws Exception {
+                final byte[] body = Content.Source.asInputStream(request).readAllBytes();
+                if (body.length > 0 && !request.getHttpURI().getPath().contains("streamed")) {
+                    MatcherAssert.assertThat(body, new IsEqual<>(getCommonsJar()));
+                }
+                if (body.length > 0) {
+                    uploaded.set(body.length);
+                }
                 response.setStatus(200);
+                if (altSvc != null) {
+                    response.getHeaders().add(HttpHeader.ALT_SVC, altSvc);
+                }
+                response.getHeaders().add(HttpHeader.ETAG, ETAG);
+                response.getHeaders().add(HttpHeader.ACCEPT_RANGES, "bytes");
+                if (sha1 != null) {
+                    response.getHeaders().add("x-checksum-sha1", sha1);
+                }
+                final String requested = request.getHeaders().get(HttpHeader.RANGE);
+                range = requested;
                 if ("GET".equals(request.getMethod())) {
-                    response.write(true, ByteBuffer.wrap(getCommonsJar()), Callback.NOOP);
-                } else {
-                    response.write(true, ByteBuffer.allocate(0), Callback.NOOP);
+                    gets.incrementAndGet();
+                }
+                if ("PUT".equals(request.getMethod())) {
+                    puts.incrementAndGet();
+                    putSha256 = request.getHeaders().get("X-Checksum-Sha256");
                 }
-                Content.Chunk chunk = request.read();
-                if (chunk.hasRemaining()) {
-                    MatcherAssert.assertThat(
-                        chunk.getByteBuffer().array(), new IsEqual<>(getCommonsJar())
+                encoding = request.getHeaders().get(HttpHeader.ACCEPT_ENCODING);
+                priority = request.getHeaders().get(HttpTransporter.PRIORITY);
+                if ("GET".equals(request.getMethod())
+                    && ETAG.equals(request.getHeaders().get(HttpHeader.IF_NONE_MATCH))) {
+                    notModified.incrementAndGet();
+                    response.setStatus(304);
+                    response.write(true, ByteBuffer.allocate(0), callback);
+                } else if ("GET".equals(request.getMethod()) && requested != null
+                    && ETAG.equals(request.getHeaders().get(HttpHeader.IF_RANGE))) {
+                    final byte[] jar = getCommonsJar();
+                    final String[] bounds = requested.substring(6).split("-");
+                    final int from = Integer.parseInt(bounds[0]);
+                    final int to = bounds.length > 1 ? Integer.parseInt(bounds[1]) : jar.length - 1;
+                    ranges.add(requested);
+                    response.setStatus(206);
+                    response.getHeaders().add(
+                        HttpHeader.CONTENT_RANGE, String.format("bytes %d-%d/%d", from, to, jar.length)
                     );
+                    final int end = request.getHttpURI().getPath().contains("greedy") ? jar.length - 1 : to;
+                    response.write(true, ByteBuffer.wrap(jar, from, end - from + 1), callback);
+                } else if ("GET".equals(request.getMethod()) && request.getHttpURI().getPath().endsWith(".sha1")) {
+                    response.write(
+                        true, ByteBuffer.wrap(jarSha1().getBytes(StandardCharsets.US_ASCII)), callback
+                    );
+                } else if ("GET".equals(request.getMethod()) && request.getHttpURI().getPath().contains("slow")) {
+                    final byte[] jar = getCommonsJar();
+                    response.getHeaders().add(HttpHeader.CONTENT_LENGTH, jar.length);
+                    final FutureCallback first = new FutureCallback();
+                    response.write(false, ByteBuffer.wrap(jar, 0, 100), first);
+                    first.get();
+                    Thread.sleep(1500L);
+                    response.write(true, ByteBuffer.wrap(jar, 100, jar.length - 100), callback);
+                } else if ("GET".equals(request.getMethod()) && "gzip".equals(encoding)) {
+                    final ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+                    try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+                        out.write(getCommonsJar());
+                    }
+                    response.getHeaders().add(HttpHeader.CONTENT_ENCODING, "gzip");
+                    response.getHeaders().add(HttpHeader.CONTENT_LENGTH, gzip.size());
+                    response.write(true, ByteBuffer.wrap(gzip.toByteArray()), callback);
+                } else if ("GET".equals(request.getMethod())) {
+                    response.write(true, ByteBuffer.wrap(getCommonsJar()), callback);
+                } else {
+                    response.write(true, ByteBuffer.allocate(0), callback);
                 }
                 latch.countDown();
-                return false;
+                return true;
             }
         });
         this.server.start();
@@ -78,6 +188,385 @@ public class TransporterTest {
         MatcherAssert.assertThat(data, new IsEqual<>(this.getCommonsJar()));
     }
 
+    @Test
+    void getsResourceFromLocalhostViaConfiguredTcpProtocol() throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(HttpTransporter.CONFIG_PROP_TCP_PROTOCOL, HttpTransporter.TCP_HTTP11);
+        final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+            .setListener(new TransportListener() {});
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat(task.getDataBytes(), new IsEqual<>(this.getCommonsJar()));
+        MatcherAssert.assertThat(this.priority, new IsEqual<>("u=4"));
+    }
+
+    @Test
+    void resumesInterruptedDownload(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        final String repo = String.format("http://localhost:%d/", this.port);
+        final Path partial = dir.resolve("partial");
+        Files.write(partial, Arrays.copyOf(this.getCommonsJar(), 1000));
+        new PartialDownloads(
+            OriginExpirations.stateFile(session, PartialDownloads.CONFIG_PROP_RESUME, PartialDownloads.DIR_NAME)
+        ).keep(repo + MavenResolverIT.REMOTE_PATH, partial, ETAG, this.getCommonsJar().length);
+        final Path target = dir.resolve("commons-cli.jar");
+        final AtomicLong started = new AtomicLong(-1L);
+        final ByteArrayOutputStream reported = new ByteArrayOutputStream();
+        final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+            .setDataFile(target.toFile()).setListener(
+                new TransportListener() {
+                    @Override
+                    public void transportStarted(final long offset, final long length) {
+                        started.set(offset);
+                        reported.reset();
+                    }
+
+                    @Override
+                    public void transportProgressed(final ByteBuffer data) {
+                        final byte[] bytes = new byte[data.remaining()];
+                        data.duplicate().get(bytes);
+                        reported.write(bytes, 0, bytes.length);
+                    }
+                }
+            );
+        try (final Transporter transporter = new HttpTransporterFactory()
+            .newInstance(session, MavenResolverIT.newRepo(repo))) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat(this.range, new IsEqual<>("bytes=1000-"));
+        MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+        MatcherAssert.assertThat("Kept prefix is reported", started.get(), new IsEqual<>(0L));
+        MatcherAssert.assertThat(reported.toByteArray(), new IsEqual<>(this.getCommonsJar()));
+    }
+
+    @Test
+    void restartsDownloadWhenRangeDoesNotMatchKeptLength(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        final String repo = String.format("http://localhost:%d/", this.port);
+        final Path partial = dir.resolve("partial");
+        Files.write(partial, Arrays.copyOf(this.getCommonsJar(), 1000));
+        final PartialDownloads partials = new PartialDownloads(
+            OriginExpirations.stateFile(session, PartialDownloads.CONFIG_PROP_RESUME, PartialDownloads.DIR_NAME)
+        );
+        partials.keep(repo + MavenResolverIT.REMOTE_PATH, partial, ETAG, this.getCommonsJar().length + 1L);
+        final Path target = dir.resolve("commons-cli.jar");
+        final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+            .setDataFile(target.toFile()).setListener(new TransportListener() {});
+        try (final Transporter transporter = new HttpTransporterFactory()
+            .newInstance(session, MavenResolverIT.newRepo(repo))) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat("Restarted without range", this.range, new IsEqual<>(null));
+        MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+        MatcherAssert.assertThat(partials.data(repo + MavenResolverIT.REMOTE_PATH), new IsEqual<>(null));
+    }
+
+    @Test
+    void resumesDownloadBelowMinThroughput(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(ThroughputFloor.CONFIG_PROP_MIN_THROUGHPUT, 1024L * 1024L);
+        session.setConfigProperty(ThroughputFloor.CONFIG_PROP_PERIOD, 1);
+        final Path target = dir.resolve("slow.jar");
+        final GetTask task = new GetTask(URI.create("slow/commons-cli.jar"))
+            .setDataFile(target.toFile()).setListener(new TransportListener() {});
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d/", this.port))
+        )) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat(this.range, new IsEqual<>("bytes=100-"));
+        MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+    }
+
+    @Test
+    void limitsBandwidthOfArtifacts(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(TokenBucket.CONFIG_PROP_MAX_BYTES_PER_SECOND + ".test", 20_000L);
+        final Path target = dir.resolve("commons-cli.jar");
+        final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+            .setDataFile(target.toFile()).setListener(new TransportListener() {});
+        final long start = System.nanoTime();
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d/", this.port))
+        )) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat(
+            "Content above the burst waits for the rate",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), OrderingComparison.greaterThan(1000L)
+        );
+        MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+    }
+
+    @Test
+    void downloadsLargeFileInSegments(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(SegmentedDownload.CONFIG_PROP_THRESHOLD, 1024L);
+        session.setConfigProperty(SegmentedDownload.CONFIG_PROP_HTTP11, true);
+        final Path target = dir.resolve("commons-cli.jar");
+        final ByteArrayOutputStream progress = new ByteArrayOutputStream();
+        final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+            .setDataFile(target.toFile()).setListener(
+                new TransportListener() {
+                    @Override
+                    public void transportProgressed(final ByteBuffer data) {
+                        final byte[] bytes = new byte[data.remaining()];
+                        data.get(bytes);
+                        progress.write(bytes, 0, bytes.length);
+                    }
+                }
+            );
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat(this.ranges.size(), new IsEqual<>(SegmentedDownload.DEFAULT_SEGMENTS - 1));
+        MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+        MatcherAssert.assertThat("Progress is in order", progress.toByteArray(), new IsEqual<>(this.getCommonsJar()));
+    }
+
+    @Test
+    void downloadsInSingleStreamOverHttp11ByDefault(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(SegmentedDownload.CONFIG_PROP_THRESHOLD, 1024L);
+        final Path target = dir.resolve("commons-cli.jar");
+        final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+            .setDataFile(target.toFile()).setListener(new TransportListener() {});
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat("No range is requested", this.ranges.isEmpty(), new IsEqual<>(true));
+        MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+    }
+
+    @Test
+    void downloadsInSingleStreamWhenSegmentExceedsRange(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(SegmentedDownload.CONFIG_PROP_THRESHOLD, 1024L);
+        session.setConfigProperty(SegmentedDownload.CONFIG_PROP_HTTP11, true);
+        final Path target = dir.resolve("commons-cli.jar");
+        final ByteArrayOutputStream progress = new ByteArrayOutputStream();
+        final GetTask task = new GetTask(URI.create("greedy/commons-cli.jar"))
+            .setDataFile(target.toFile()).setListener(
+                new TransportListener() {
+                    @Override
+                    public void transportStarted(final long offset, final long length) {
+                        progress.reset();
+                    }
+
+                    @Override
+                    public void transportProgressed(final ByteBuffer data) {
+                        final byte[] bytes = new byte[data.remaining()];
+                        data.get(bytes);
+                        progress.write(bytes, 0, bytes.length);
+                    }
+                }
+            );
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+        MatcherAssert.assertThat(progress.toByteArray(), new IsEqual<>(this.getCommonsJar()));
+    }
+
+    @Test
+    void providesHeaderChecksumsOfFileDownloads(@TempDir final Path dir) throws Exception {
+        this.sha1 = ChecksumUtils.toHexString(MessageDigest.getInstance("SHA-1").digest(this.getCommonsJar()));
+        final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+            .setDataFile(dir.resolve("commons-cli.jar").toFile()).setListener(new TransportListener() {});
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            MavenResolverIT.newSession(), MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat(task.getChecksums().get("SHA-1"), new IsEqual<>(this.sha1));
+    }
+
+    @Test
+    void leavesHeaderChecksumMismatchToResolverPolicy(@TempDir final Path dir) throws Exception {
+        this.sha1 = "0000000000000000000000000000000000000000";
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(DigestingListener.CONFIG_PROP_ALGORITHMS, "SHA-1");
+        final Path target = dir.resolve("commons-cli.jar");
+        final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+            .setDataFile(target.toFile()).setListener(new TransportListener() {});
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.get(task);
+        }
+        MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+        MatcherAssert.assertThat(
+            "Declared checksum is passed to the resolver", task.getChecksums().get("SHA-1"),
+            new IsEqual<>(this.sha1)
+        );
+    }
+
+    @Test
+    void requestsMetadataUnconditionallyByDefault(@TempDir final Path dir) throws Exception {
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            MavenResolverIT.newSession(), MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            for (int idx = 0; idx < 2; ++idx) {
+                transporter.get(
+                    new GetTask(URI.create("commons-cli/commons-cli/maven-metadata.xml"))
+                        .setDataFile(dir.resolve(String.format("maven-metadata-%d.xml", idx)).toFile())
+                );
+            }
+        }
+        MatcherAssert.assertThat(this.notModified.get(), new IsEqual<>(0));
+        MatcherAssert.assertThat(this.gets.get(), new IsEqual<>(2));
+    }
+
+    @Test
+    void reusesNotModifiedMetadata(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(ValidatorStore.CONFIG_PROP_CONDITIONAL, true);
+        final RemoteRepository repo = MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port));
+        for (int idx = 0; idx < 2; ++idx) {
+            final Path target = dir.resolve(String.format("maven-metadata-%d.xml", idx));
+            final GetTask task = new GetTask(URI.create("commons-cli/commons-cli/maven-metadata.xml"))
+                .setDataFile(target.toFile()).setListener(new TransportListener() {});
+            try (final Transporter transporter = new HttpTransporterFactory().newInstance(session, repo)) {
+                transporter.get(task);
+            }
+            MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+        }
+        MatcherAssert.assertThat(this.notModified.get(), new IsEqual<>(1));
+    }
+
+    @Test
+    void decompressesPomsWhenEnabled(@TempDir final Path dir) throws Exception {
+        this.sha1 = ChecksumUtils.toHexString(MessageDigest.getInstance("SHA-1").digest(this.getCommonsJar()));
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(HttpTransporter.CONFIG_PROP_COMPRESSION, true);
+        final RemoteRepository repo = MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port));
+        final Path target = dir.resolve("commons-cli.pom");
+        final GetTask pom = new GetTask(URI.create("commons-cli/commons-cli/1.4/commons-cli-1.4.pom"))
+            .setDataFile(target.toFile()).setListener(new TransportListener() {});
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(session, repo)) {
+            transporter.get(pom);
+            MatcherAssert.assertThat(this.encoding, new IsEqual<>("gzip"));
+            MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+            MatcherAssert.assertThat(pom.getChecksums().get("SHA-1"), new IsEqual<>(this.sha1));
+            final GetTask jar = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+                .setListener(new TransportListener() {});
+            transporter.get(jar);
+            MatcherAssert.assertThat("Jar is not compressed", this.encoding, new IsEqual<>(null));
+        }
+    }
+
+    @Test
+    void pipelinesBatchOfDownloads(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(HttpTransporter.CONFIG_PROP_BATCH_WINDOW, 2);
+        final List<GetTask> tasks = new ArrayList<>();
+        for (int idx = 0; idx < 5; ++idx) {
+            tasks.add(
+                new GetTask(URI.create(String.format("commons-cli/commons-cli/1.4/commons-cli-1.%d.jar", idx)))
+                    .setDataFile(dir.resolve(String.format("%d.jar", idx)).toFile())
+            );
+        }
+        try (final HttpTransporter transporter = (HttpTransporter) new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            MatcherAssert.assertThat(transporter.getAll(tasks).isEmpty(), new IsEqual<>(true));
+        }
+        for (final GetTask task : tasks) {
+            MatcherAssert.assertThat(
+                Files.readAllBytes(task.getDataFile().toPath()), new IsEqual<>(this.getCommonsJar())
+            );
+        }
+    }
+
+    @Test
+    void completesBatchTasksAsTheirResponsesArrive(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(HttpTransporter.CONFIG_PROP_BATCH_WINDOW, 2);
+        final int length = this.getCommonsJar().length;
+        final Queue<String> completed = new ConcurrentLinkedQueue<>();
+        final List<GetTask> tasks = new ArrayList<>();
+        for (final String name : Arrays.asList("slow", "0", "1", "2", "3")) {
+            final AtomicLong received = new AtomicLong();
+            tasks.add(
+                new GetTask(URI.create(String.format("%s/commons-cli.jar", name)))
+                    .setDataFile(dir.resolve(String.format("%s.jar", name)).toFile())
+                    .setListener(
+                        new TransportListener() {
+                            @Override
+                            public void transportProgressed(final ByteBuffer data) {
+                                if (received.addAndGet(data.remaining()) == length) {
+                                    completed.add(name);
+                                }
+                            }
+                        }
+                    )
+            );
+        }
+        try (final HttpTransporter transporter = (HttpTransporter) new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            MatcherAssert.assertThat(transporter.getAll(tasks).isEmpty(), new IsEqual<>(true));
+        }
+        MatcherAssert.assertThat(
+            "Slow response does not hold back the others",
+            new ArrayList<>(completed).indexOf("slow"), new IsEqual<>(tasks.size() - 1)
+        );
+    }
+
+    @Test
+    void readsPrefetchedDownloads(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setCache(new DefaultRepositoryCache());
+        final RemoteRepository repo = MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port));
+        final URI pom = URI.create("commons-cli/commons-cli/1.4/commons-cli-1.4.pom");
+        final Path target = dir.resolve("commons-cli.jar");
+        final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH)).setDataFile(target.toFile());
+        try (final HttpTransporter transporter =
+            (HttpTransporter) new HttpTransporterFactory().newInstance(session, repo)) {
+            final Runnable unpark = transporter.prefetch(Arrays.asList(URI.create(MavenResolverIT.REMOTE_PATH), pom));
+            try (final Transporter other = new HttpTransporterFactory().newInstance(session, repo)) {
+                other.get(task);
+            }
+            unpark.run();
+        }
+        MatcherAssert.assertThat("Prefetched file is not requested again", this.gets.get(), new IsEqual<>(2));
+        MatcherAssert.assertThat(Files.readAllBytes(target), new IsEqual<>(this.getCommonsJar()));
+        final Path prefetched = OriginExpirations.stateFile(
+            session, BatchRepositoryConnectorFactory.CONFIG_PROP_BATCH, HttpTransporter.PREFETCH_DIR_NAME
+        );
+        try (Stream<Path> files = Files.list(prefetched)) {
+            MatcherAssert.assertThat("Prefetched files are dropped", files.count(), new IsEqual<>(0L));
+        }
+        GlobalState.get(session).close();
+    }
+
+    @Test
+    void requestsChecksumSidecarsAlongWithArtifact() throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(ChecksumSidecars.CONFIG_PROP_SIDECARS, "sha1");
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.get(new GetTask(URI.create(MavenResolverIT.REMOTE_PATH)));
+            for (int idx = 0; idx < 100 && this.gets.get() < 2; ++idx) {
+                Thread.sleep(50L);
+            }
+            final GetTask sha1 = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH + ".sha1"));
+            transporter.get(sha1);
+            MatcherAssert.assertThat(sha1.getDataString(), new IsEqual<>(this.jarSha1()));
+        }
+        MatcherAssert.assertThat("Checksum is not requested again", this.gets.get(), new IsEqual<>(2));
+    }
+
     @Test
     void performsHeadRequest() throws Exception {
         final PeekTask task = new PeekTask(URI.create(MavenResolverIT.REMOTE_PATH));
@@ -103,6 +592,207 @@ public class TransporterTest {
         MatcherAssert.assertThat("Put performed", latch.await(1, TimeUnit.MINUTES));
     }
 
+    @Test
+    void putsDataFileWithProgress(@TempDir final Path dir) throws Exception {
+        final Path file = Files.write(dir.resolve("commons-cli.jar"), this.getCommonsJar());
+        final AtomicLong progressed = new AtomicLong();
+        final PutTask task = new PutTask(URI.create(MavenResolverIT.REMOTE_PATH)).setDataFile(file.toFile())
+            .setListener(
+                new TransportListener() {
+                    @Override
+                    public void transportProgressed(final ByteBuffer data) {
+                        progressed.addAndGet(data.remaining());
+                    }
+                }
+            );
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            MavenResolverIT.newSession(),
+            MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.put(task);
+        }
+        MatcherAssert.assertThat(this.uploaded.get(), new IsEqual<>(this.getCommonsJar().length));
+        MatcherAssert.assertThat(progressed.get(), new IsEqual<>((long) this.getCommonsJar().length));
+    }
+
+    @Test
+    void streamsLargeDataWithoutFile() throws Exception {
+        final byte[] data = new byte[1024 * 1024];
+        Arrays.fill(data, (byte) 'x');
+        final AtomicLong progressed = new AtomicLong();
+        final PutTask task = new PutTask(URI.create("streamed/data.bin")).setDataBytes(data)
+            .setListener(
+                new TransportListener() {
+                    @Override
+                    public void transportProgressed(final ByteBuffer chunk) {
+                        progressed.addAndGet(chunk.remaining());
+                    }
+                }
+            );
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            MavenResolverIT.newSession(),
+            MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.put(task);
+        }
+        MatcherAssert.assertThat(this.uploaded.get(), new IsEqual<>(data.length));
+        MatcherAssert.assertThat(progressed.get(), new IsEqual<>((long) data.length));
+    }
+
+    @Test
+    void pipelinesBatchOfUploads(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(HttpTransporter.CONFIG_PROP_DEPLOY_WINDOW, 2);
+        final Path file = Files.write(dir.resolve("commons-cli.jar"), this.getCommonsJar());
+        final List<PutTask> tasks = new ArrayList<>();
+        for (int idx = 0; idx < 5; ++idx) {
+            tasks.add(
+                new PutTask(URI.create(String.format("commons-cli/commons-cli/1.4/commons-cli-1.%d.jar", idx)))
+                    .setDataFile(file.toFile())
+            );
+        }
+        final List<PutTask> done = new ArrayList<>();
+        try (final HttpTransporter transporter = (HttpTransporter) new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.putAll(
+                tasks,
+                (task, failure) -> {
+                    Assertions.assertNull(failure);
+                    done.add(task);
+                }
+            );
+        }
+        MatcherAssert.assertThat("Completed in order", done, new IsEqual<>(tasks));
+        MatcherAssert.assertThat(this.puts.get(), new IsEqual<>(tasks.size()));
+    }
+
+    @Test
+    void declaresChecksumsOfUploadsInHeaders(@TempDir final Path dir) throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(UploadChecksums.CONFIG_PROP_HEADERS, true);
+        session.setConfigProperty(UploadChecksums.CONFIG_PROP_SKIP_SIDECARS, true);
+        final Path file = Files.write(dir.resolve("commons-cli.jar"), this.getCommonsJar());
+        final String sha256 = ChecksumUtils.toHexString(
+            MessageDigest.getInstance("SHA-256").digest(this.getCommonsJar())
+        );
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.put(new PutTask(URI.create(MavenResolverIT.REMOTE_PATH)).setDataFile(file.toFile()));
+            transporter.put(
+                new PutTask(URI.create(MavenResolverIT.REMOTE_PATH + ".sha256")).setDataString(sha256)
+            );
+        }
+        MatcherAssert.assertThat(this.putSha256, new IsEqual<>(sha256));
+        MatcherAssert.assertThat("Checksum file is not uploaded", this.puts.get(), new IsEqual<>(1));
+    }
+
+    @Test
+    void sharesClientsWithinSession() throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setCache(new DefaultRepositoryCache());
+        final RemoteRepository repo = MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port));
+        final GlobalState state = GlobalState.get(session);
+        final List<Object> used = new ArrayList<>();
+        for (int idx = 0; idx < 2; ++idx) {
+            final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+                .setListener(new TransportListener() {});
+            try (final Transporter transporter = new HttpTransporterFactory().newInstance(session, repo)) {
+                transporter.get(task);
+            }
+            MatcherAssert.assertThat(task.getDataBytes(), new IsEqual<>(this.getCommonsJar()));
+            MatcherAssert.assertThat("Client is shared", state.getClients().size(), new IsEqual<>(1));
+            used.add(state.getClients().iterator().next());
+        }
+        Assertions.assertSame(used.get(0), used.get(1));
+        state.close();
+    }
+
+    @Test
+    void closesStateOnceSessionCacheIsDropped() throws Exception {
+        final GlobalState state = this.stateOfDroppedSession();
+        for (int idx = 0; idx < 100 && !state.getClients().isEmpty(); ++idx) {
+            System.gc();
+            Thread.sleep(100L);
+        }
+        MatcherAssert.assertThat("Clients are stopped", state.getClients().isEmpty(), new IsEqual<>(true));
+    }
+
+    @Test
+    void ignoresHttp3AlternativeOfCleartextOrigin() throws Exception {
+        this.altSvc = String.format("h3=\":%d\"", this.port);
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setCache(new DefaultRepositoryCache());
+        session.setConfigProperty(AltSvcCache.CONFIG_PROP_PERSIST, false);
+        final RemoteRepository repo = MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port));
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(session, repo)) {
+            for (int idx = 0; idx < 2; ++idx) {
+                final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+                    .setListener(new TransportListener() {});
+                transporter.get(task);
+                MatcherAssert.assertThat(task.getDataBytes(), new IsEqual<>(this.getCommonsJar()));
+            }
+        }
+        MatcherAssert.assertThat(
+            "Connections are not raced", GlobalState.get(session).getRaceWinners().isEmpty(), new IsEqual<>(true)
+        );
+        for (final HttpClient client : GlobalState.get(session).getClients()) {
+            MatcherAssert.assertThat(
+                "HTTP/3 is not used", client.getTransport() instanceof HttpClientTransportOverHTTP3,
+                new IsEqual<>(false)
+            );
+        }
+        GlobalState.get(session).close();
+    }
+
+    @Test
+    void keepsToTcpWhenQuicCannotHonourTlsSettings() throws Exception {
+        this.altSvc = String.format("h3=\":%d\"", this.port);
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setCache(new DefaultRepositoryCache());
+        session.setConfigProperty(AltSvcCache.CONFIG_PROP_PERSIST, false);
+        session.setConfigProperty("aether.connector.https.cipherSuites", "TLS_AES_128_GCM_SHA256");
+        final RemoteRepository repo = MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port));
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(session, repo)) {
+            for (int idx = 0; idx < 2; ++idx) {
+                final GetTask task = new GetTask(URI.create(MavenResolverIT.REMOTE_PATH))
+                    .setListener(new TransportListener() {});
+                transporter.get(task);
+                MatcherAssert.assertThat(task.getDataBytes(), new IsEqual<>(this.getCommonsJar()));
+            }
+        }
+        for (final HttpClient client : GlobalState.get(session).getClients()) {
+            MatcherAssert.assertThat(
+                "HTTP/3 is not used", client.getTransport() instanceof HttpClientTransportOverHTTP3,
+                new IsEqual<>(false)
+            );
+        }
+        GlobalState.get(session).close();
+    }
+
+    @Test
+    void failsOnceBothProtocolsAreUnreachable() throws Exception {
+        final int closed;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closed = socket.getLocalPort();
+        }
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setConfigProperty(ConfigurationProperties.CONNECT_TIMEOUT, 1000);
+        session.setConfigProperty(AltSvcCache.CONFIG_PROP_PERSIST, false);
+        session.setConfigProperty(Http3FailureCache.CONFIG_PROP_PERSIST, false);
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", closed))
+        )) {
+            Assertions.assertTimeoutPreemptively(
+                Duration.ofSeconds(30),
+                () -> Assertions.assertThrows(
+                    Exception.class, () -> transporter.get(new GetTask(URI.create(MavenResolverIT.REMOTE_PATH)))
+                )
+            );
+        }
+    }
+
     @AfterEach
     void close() throws Exception {
         this.server.stop();
@@ -119,6 +809,23 @@ public class TransporterTest {
         return task.getDataBytes();
     }
 
+    String jarSha1() throws Exception {
+        return ChecksumUtils.toHexString(MessageDigest.getInstance("SHA-1").digest(this.getCommonsJar()));
+    }
+
+    private GlobalState stateOfDroppedSession() throws Exception {
+        final DefaultRepositorySystemSession session = MavenResolverIT.newSession();
+        session.setCache(new DefaultRepositoryCache());
+        try (final Transporter transporter = new HttpTransporterFactory().newInstance(
+            session, MavenResolverIT.newRepo(String.format("http://localhost:%d", this.port))
+        )) {
+            transporter.get(new GetTask(URI.create(MavenResolverIT.REMOTE_PATH)));
+        }
+        final GlobalState state = GlobalState.get(session);
+        MatcherAssert.assertThat(state.getClients().isEmpty(), new IsEqual<>(false));
+        return state;
+    }
+
     byte[] getCommonsJar() throws IOException {
         return getClass().getClassLoader().getResourceAsStream(MavenResolverIT.LOCAL_PATH).readAllBytes();
     }